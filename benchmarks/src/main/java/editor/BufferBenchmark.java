@@ -0,0 +1,93 @@
+package editor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BufferBenchmark {
+    /**
+         BufferBenchmark measures inserting and deleting single characters in the Rope that holds the text.
+         Random edits all go into the same Rope, which never changes, so every one costs the same. Sequential edits
+         work like typing and backspacing: each one goes right after (or before) the last one.
+    */
+
+    private static final int POSITIONS = 1 << 16;
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private Rope document;
+    private int[] positions = new int[POSITIONS];
+    private int next;
+    private Rope typed;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void load() {
+        document = Rope.of(Documents.generate(size));
+        Random random = new Random(7);
+        for (int i = 0; i < POSITIONS; i++) {
+            positions[i] = random.nextInt(size);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        typed = document;
+        cursor = size / 2;
+    }
+
+    private int nextPosition() {
+        next = (next + 1) & (POSITIONS - 1);
+        return positions[next];
+    }
+
+    @Benchmark
+    public Rope insertRandom() {
+        return document.insert(nextPosition(), "x");
+    }
+
+    @Benchmark
+    public Rope deleteRandom() {
+        int offset = nextPosition();
+        return document.delete(offset, offset + 1);
+    }
+
+    @Benchmark
+    public Rope insertSequential() {
+        typed = typed.insert(cursor, "x");
+        cursor++;
+        return typed;
+    }
+
+    @Benchmark
+    public Rope deleteSequential() {
+        if (cursor == 0) {
+            typed = document;
+            cursor = size / 2;
+        }
+        typed = typed.delete(cursor - 1, cursor);
+        cursor--;
+        return typed;
+    }
+
+}
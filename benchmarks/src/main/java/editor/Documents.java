@@ -0,0 +1,51 @@
+package editor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+public class Documents {
+    /**
+         Documents makes up the text the benchmarks work on: words of 1 to 10 letters separated by spaces, with a
+         newline every 40 to 120 characters, so there is both word wrap and hard line breaks to lay out.
+         The same size always gives the same text.
+    */
+
+    private Documents() {
+    }
+
+    /** Returns a document of exactly size characters. */
+    public static String generate(int size) {
+        Random random = new Random(42);
+        StringBuilder document = new StringBuilder(size);
+        int lineLength = 0;
+        int nextBreak = 40 + random.nextInt(80);
+        while (document.length() < size) {
+            int wordLength = 1 + random.nextInt(10);
+            for (int i = 0; i < wordLength; i++) {
+                document.append((char) ('a' + random.nextInt(26)));
+            }
+            lineLength += wordLength + 1;
+            if (lineLength >= nextBreak) {
+                document.append('\n');
+                lineLength = 0;
+                nextBreak = 40 + random.nextInt(80);
+            } else {
+                document.append(' ');
+            }
+        }
+        document.setLength(size);
+        return document.toString();
+    }
+
+    /** Writes a document of size characters to a new temporary file and returns it. */
+    public static Path write(int size) throws IOException {
+        Path file = Files.createTempFile("editor-benchmark", ".txt");
+        Files.write(file, generate(size).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+}
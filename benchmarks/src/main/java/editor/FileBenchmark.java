@@ -0,0 +1,77 @@
+package editor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileBenchmark {
+    /**
+         FileBenchmark measures saving a document with FileSaver and reading all of it back with a FileLoader.
+         Files of 16 MB and up are memory mapped by the FileLoader, so the 100 MB case goes down that path.
+    */
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private Rope document;
+    private Path loadFile;
+    private Path saveFile;
+
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        document = Rope.of(Documents.generate(size));
+        loadFile = Files.createTempFile("editor-benchmark", ".txt");
+        saveFile = Files.createTempFile("editor-benchmark", ".txt");
+        FileSaver.save(document, loadFile, StandardCharsets.UTF_8, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(loadFile);
+        Files.deleteIfExists(saveFile);
+    }
+
+    @Benchmark
+    public long save() throws IOException {
+        FileSaver.save(document, saveFile, StandardCharsets.UTF_8, false);
+        return Files.size(saveFile);
+    }
+
+    @Benchmark
+    public long load() throws IOException {
+        long length = 0;
+        FileLoader loader = new FileLoader(loadFile);
+        try {
+            while (loader.hasMore()) {
+                length += loader.next().length();
+            }
+        } finally {
+            loader.close();
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,133 @@
+package editor;
+
+import javafx.scene.Group;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dprism.order=sw"})
+public class LayoutBenchmark {
+    /**
+         LayoutBenchmark measures word wrap and cursor movement in a LinkedList.
+         The LinkedList draws into a Group that is never put in a Scene, so no Stage or window is needed and the
+         benchmark runs without a display. Text is still measured with the real fonts, so the numbers match the
+         editor, which means the JavaFX font libraries (Pango on Linux) have to be installed.
+         The document is opened the same way the editor opens a file, through a FileLoader.
+    */
+
+    private static final int WINDOW_WIDTH = 800;
+    private static final int WINDOW_HEIGHT = 800;
+    private static final int POSITIONS = 1 << 12;
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private LinkedList text;
+    private int[] xs = new int[POSITIONS];
+    private int[] ys = new int[POSITIONS];
+    private int next;
+    private boolean up;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        Path file = Documents.write(size);
+        try {
+            text = new LinkedList(new Group(), WINDOW_HEIGHT, WINDOW_WIDTH);
+            text.addInitial(new FileLoader(file));
+            text.finishLoading();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = random.nextInt(WINDOW_WIDTH);
+            ys[i] = random.nextInt(text.getEnd());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void moveToMiddle() {
+        text.moveCursor(WINDOW_WIDTH / 2, text.getEnd() / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        text = null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public int fullLayout() {
+        text.render();
+        return text.lineCount();
+    }
+
+    /** Types a character in the middle of the document and deletes it again, laying out after each. */
+    @Benchmark
+    public int incrementalLayout() {
+        text.add("x");
+        text.layout();
+        text.delete();
+        text.layout();
+        return text.lineCount();
+    }
+
+    /** Types ten characters within one frame and deletes them again in the next, so each frame lays out once. */
+    @Benchmark
+    public int batchedTyping() {
+        for (int i = 0; i < 10; i++) {
+            text.add("x");
+        }
+        text.layout();
+        for (int i = 0; i < 10; i++) {
+            text.delete();
+        }
+        text.layout();
+        return text.lineCount();
+    }
+
+    /** Goes up and down a line in turn, so the cursor stays in the same place. */
+    @Benchmark
+    public int moveUpDown() {
+        up = !up;
+        if (up) {
+            text.moveUp();
+        } else {
+            text.moveDown();
+        }
+        return text.cursorY();
+    }
+
+    /** Clicks somewhere in the document, which finds the closest character on the clicked line. */
+    @Benchmark
+    public int click() {
+        next = (next + 1) & (POSITIONS - 1);
+        text.moveCursor(xs[next], ys[next]);
+        return text.cursorX();
+    }
+
+}
@@ -0,0 +1,80 @@
+package editor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LayoutEngineBenchmark {
+    /**
+         LayoutEngineBenchmark measures word wrap on its own, with no JavaFX at all. Characters are measured by
+         a WidthSource that gives each letter a width from 6 to 12 pixels, about what a 20 point font does, so
+         the lines wrap about as often as in the editor. Unlike LayoutBenchmark it runs anywhere.
+    */
+
+    private static final int WINDOW_WIDTH = 800;
+
+    /** Widths that depend on the character, like a proportional font. */
+    private static final WidthSource WIDTHS = new WidthSource() {
+        @Override
+        public double width(int codePoint) {
+            return codePoint == '\n' ? 0 : 6 + codePoint % 7;
+        }
+    };
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private LayoutEngine engine;
+    private Rope text;
+    private LineIndex lines;
+    private int middle;
+
+    @Setup(Level.Trial)
+    public void layOut() {
+        engine = new LayoutEngine(WIDTHS, WINDOW_WIDTH);
+        text = Rope.of(Documents.generate(size));
+        lines = engine.layout(text);
+        middle = text.length() / 2;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public LineIndex fullLayout() {
+        return engine.layout(text);
+    }
+
+    /** Lays out the lines around a character typed in the middle of the document. */
+    @Benchmark
+    public LayoutEngine.Reflow typeInMiddle() {
+        Rope typed = text.insert(middle, "x");
+        return engine.relayout(typed, lines.insertText(middle, 1), middle, middle + 1);
+    }
+
+    /** Finds the x position of the character in the middle of the document. */
+    @Benchmark
+    public double xOf() {
+        int line = lines.lineOf(middle);
+        return engine.xOf(text, lines, middle, line);
+    }
+
+}
@@ -0,0 +1,224 @@
+package editor;
+
+import javafx.geometry.VPos;
+import javafx.scene.Group;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+public class CanvasRenderer implements Renderer {
+    /**
+         The CanvasRenderer paints the lines of a LinkedList that are inside the window onto Canvases with
+         fillText, instead of making a Text node for each like the ViewportRenderer. A Canvas is a tile of
+         TILE_LINES lines as wide as the window, and there are as many as it takes to cover the window plus one.
+         Tile number n is always painted on the Canvas in slot n % pool size, just like the Text pool, so
+         scrolling moves the tiles that are painted already along with the rest of the text and only paints the
+         ones that came into the window. An edit paints only the lines it changed again, after clearing their
+         strip of the tile. Each run of characters is put at the x position the LayoutEngine worked out from the
+         cached widths, so nothing is measured while painting.
+         The Canvases are clear where there is no text, so the highlights show through from behind them, and the
+         cursor is a node of its own in front of them: blinking it never paints a line again.
+    */
+
+    private static final Metrics.Operation PAINT = Metrics.operation("paint");
+    private static final int TILE_LINES = 16;
+
+    private Group root;
+    private LinkedList text;
+    private ArrayList<Canvas> pool = new ArrayList<Canvas>();
+    private int[] boundTiles = new int[0]; // The tile each Canvas in the pool is showing, -1 if none
+    private Font font;
+    private int lineHeight = 1;
+    private int windowWidth;
+    private int windowHeight;
+    private int scrollY;
+    private int dirtyFrom;
+    private int dirtyTo;
+    private Highlights highlights;
+
+    public CanvasRenderer(Group root, LinkedList text, int windowWidth, int windowHeight) {
+        this.root = root;
+        this.text = text;
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+        highlights = new Highlights(root, text);
+    }
+
+    /** Sets the font the lines are painted in. All of them have to be painted again. */
+    @Override
+    public void setFont(Font font, int lineHeight) {
+        this.font = font;
+        this.lineHeight = lineHeight;
+        highlights.setLineHeight(lineHeight);
+        resizePool();
+    }
+
+    /** Changes how much of the text fits in the window. Every tile is painted again. */
+    @Override
+    public void setWindowSize(int newWidth, int newHeight) {
+        windowWidth = newWidth;
+        windowHeight = newHeight;
+        resizePool();
+    }
+
+    /** Throws away every Canvas and highlight Rectangle. setWindowSize() makes the Canvases again. */
+    @Override
+    public void release() {
+        root.getChildren().removeAll(pool);
+        pool.clear();
+        boundTiles = new int[0];
+        highlights.release();
+    }
+
+    /** Changes which part of the text is in the window. */
+    @Override
+    public void setScroll(int newScrollY) {
+        scrollY = Math.max(0, newScrollY);
+        update();
+    }
+
+    @Override
+    public int scrollY() {
+        return scrollY;
+    }
+
+    /** Returns the first line in the window. */
+    @Override
+    public int firstLine() {
+        return scrollY / lineHeight;
+    }
+
+    /** Marks the characters of lines [from, to) as changed. */
+    @Override
+    public void invalidate(int from, int to) {
+        if (dirtyFrom >= dirtyTo) {
+            dirtyFrom = from;
+            dirtyTo = to;
+        } else {
+            dirtyFrom = Math.min(dirtyFrom, from);
+            dirtyTo = Math.max(dirtyTo, to);
+        }
+    }
+
+    /** Paints the tiles that came into the window, and the lines that changed on the ones that were in it. */
+    @Override
+    public void update() {
+        PAINT.start();
+        int size = pool.size();
+        int first = scrollY / lineHeight / TILE_LINES;
+        int lineCount = text.lineCount();
+        for (int tile = first; tile < first + size; tile++) {
+            int slot = tile % size;
+            Canvas canvas = pool.get(slot);
+            int from = tile * TILE_LINES;
+            if (from >= lineCount) {
+                if (boundTiles[slot] != -1) {
+                    canvas.setVisible(false);
+                    boundTiles[slot] = -1;
+                }
+            } else if (boundTiles[slot] != tile) {
+                canvas.setLayoutY(from * lineHeight);
+                canvas.setVisible(true);
+                paint(canvas, from, from, from + TILE_LINES);
+                boundTiles[slot] = tile;
+            } else if (dirtyFrom < from + TILE_LINES && dirtyTo > from) {
+                paint(canvas, from, Math.max(from, dirtyFrom), Math.min(from + TILE_LINES, dirtyTo));
+            }
+        }
+        dirtyFrom = 0;
+        dirtyTo = 0;
+        updateHighlights();
+        PAINT.stop();
+    }
+
+    /** Clears lines [from, to) of the tile on canvas, whose first line is top, and paints them again. */
+    private void paint(Canvas canvas, int top, int from, int to) {
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, (from - top) * lineHeight, windowWidth, (to - from) * lineHeight);
+        graphics.setFont(font);
+        graphics.setTextBaseline(VPos.TOP);
+        int lineCount = text.lineCount();
+        for (int line = from; line < to && line < lineCount; line++) {
+            paintLine(graphics, line, (line - top) * lineHeight);
+        }
+    }
+
+    /** Paints line at y position y, a run at a time in the colors of its tokens if it is highlighted. */
+    private void paintLine(final GraphicsContext graphics, final int line, final int y) {
+        final String lineString = text.lineString(line);
+        if (!text.isHighlighted()) {
+            graphics.setFill(Color.BLACK);
+            graphics.fillText(lineString, LayoutEngine.MARGIN, y);
+            return;
+        }
+        final int lineStart = text.lineStart(line);
+        // painted[0] is where the last run painted ended
+        final int[] painted = new int[1];
+        text.tokens(line, new Lexer.Tokens() {
+            @Override
+            public void token(int start, int end, TokenStyle style) {
+                end = Math.min(end, lineString.length());
+                if (start >= end) {
+                    return;
+                }
+                if (painted[0] < start) {
+                    run(graphics, line, lineStart, painted[0], start, lineString, Color.BLACK, y);
+                }
+                run(graphics, line, lineStart, start, end, lineString, ViewportRenderer.TOKEN_COLORS[style.ordinal()],
+                        y);
+                painted[0] = end;
+            }
+        });
+        if (painted[0] < lineString.length()) {
+            run(graphics, line, lineStart, painted[0], lineString.length(), lineString, Color.BLACK, y);
+        }
+    }
+
+    /** Paints lineString[start, end) of line, which starts at offset lineStart, in color at y position y. */
+    private void run(GraphicsContext graphics, int line, int lineStart, int start, int end, String lineString,
+                     Color color, int y) {
+        graphics.setFill(color);
+        graphics.fillText(lineString.substring(start, end), text.xOf(lineStart + start, line), y);
+    }
+
+    /** Sets the search matches to highlight, or null for none. */
+    @Override
+    public void setMatches(Matches matches) {
+        highlights.setMatches(matches);
+        updateHighlights();
+    }
+
+    /** Draws the matches, the selections and the cursors besides the main one inside the window again. */
+    @Override
+    public void updateHighlights() {
+        int first = scrollY / lineHeight;
+        highlights.update(first, first + windowHeight / lineHeight + 2);
+    }
+
+    /** Makes sure there are enough tiles to cover the window, all the right size, and paints them all again. */
+    private void resizePool() {
+        int size = windowHeight / (lineHeight * TILE_LINES) + 2;
+        while (pool.size() > size) {
+            root.getChildren().remove(pool.remove(pool.size() - 1));
+        }
+        for (Canvas canvas : pool) {
+            canvas.setWidth(windowWidth);
+            canvas.setHeight(TILE_LINES * lineHeight);
+        }
+        while (pool.size() < size) {
+            Canvas canvas = new Canvas(windowWidth, TILE_LINES * lineHeight);
+            root.getChildren().add(canvas);
+            pool.add(canvas);
+        }
+        // The slot of every tile depends on the pool size, so nothing is bound to the right tile any more
+        boundTiles = new int[size];
+        Arrays.fill(boundTiles, -2);
+        update();
+    }
+
+}
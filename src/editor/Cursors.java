@@ -0,0 +1,107 @@
+package editor;
+
+import java.util.Arrays;
+
+
+public class Cursors {
+    /**
+         Cursors are the cursors a LinkedList has besides its main one, for editing in many places at once. Each
+         is an offset with an anchor, the other end of its selection (-1 if nothing is selected), just like the
+         main cursor. They are kept in two int arrays sorted by offset, so the ones inside the window can be
+         found with a binary search however many there are.
+    */
+
+    private int[] offsets = new int[8];
+    private int[] anchors = new int[8];
+    private int count;
+
+    public int size() {
+        return count;
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int anchor(int index) {
+        return anchors[index];
+    }
+
+    /** Moves cursor number index to offset, with anchor as the other end of its selection. */
+    public void set(int index, int offset, int anchor) {
+        offsets[index] = offset;
+        anchors[index] = anchor;
+    }
+
+    /** Adds a cursor at offset, with anchor as the other end of its selection. Call sort() once they are all in. */
+    public void add(int offset, int anchor) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            anchors = Arrays.copyOf(anchors, count * 2);
+        }
+        offsets[count] = offset;
+        anchors[count] = anchor;
+        count++;
+    }
+
+    /** Removes the cursor at offset. Returns false if there isn't one there. */
+    public boolean remove(int offset) {
+        int index = firstAtOrAfter(offset);
+        if (index == count || offsets[index] != offset) {
+            return false;
+        }
+        System.arraycopy(offsets, index + 1, offsets, index, count - index - 1);
+        System.arraycopy(anchors, index + 1, anchors, index, count - index - 1);
+        count--;
+        return true;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /** Returns the index of the first cursor at offset or after it, or size() if there is none. */
+    public int firstAtOrAfter(int offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sorts the cursors by offset and drops the ones that ended up in the same place as another one or as the
+     * main cursor, which is at mainOffset.
+     */
+    public void sort(int mainOffset) {
+        // Moving every cursor the same way hardly ever changes their order, which insertion sort is quick at
+        for (int i = 1; i < count; i++) {
+            int offset = offsets[i];
+            int anchor = anchors[i];
+            int j = i - 1;
+            while (j >= 0 && offsets[j] > offset) {
+                offsets[j + 1] = offsets[j];
+                anchors[j + 1] = anchors[j];
+                j--;
+            }
+            offsets[j + 1] = offset;
+            anchors[j + 1] = anchor;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] != mainOffset && (kept == 0 || offsets[kept - 1] != offsets[i])) {
+                offsets[kept] = offsets[i];
+                anchors[kept] = anchors[i];
+                kept++;
+            }
+        }
+        count = kept;
+    }
+
+}
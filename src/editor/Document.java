@@ -0,0 +1,171 @@
+package editor;
+
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+public class Document {
+    /**
+         A Document is one file open in a tab. Until its tab is shown for the first time it is only the name of
+         the file: nothing is read and no nodes are made, so opening many files at once costs next to nothing.
+         Showing it the first time opens the file (making it if it isn't there), reads the first piece of it into
+         a LinkedList and starts autosaving it.
+         Only the tab that is shown has Text nodes. Hiding a Document throws them away and keeps only the Rope
+         and its line breaks, so showing it again just makes nodes for the lines in the window.
+         All Documents share the font metrics, the cursor Rectangle and the background save thread.
+         A file opened with tail, or one of editor.pagedSize MB or more (1024 by default), is shown read only by
+         a PagedFile instead, which never reads in more than a page of it. With tail it also follows the file
+         as it grows.
+         Java, JSON and properties files are highlighted, which paged files never are.
+         Every edit of a file that isn't paged goes into its Journal. If the editor died with edits that weren't
+         saved, they are replayed when the file is opened again.
+    */
+
+    private static final String PAGED_SIZE_PROPERTY = "editor.pagedSize";
+    private static final long DEFAULT_PAGED_MEGABYTES = 1024;
+
+    private Path path;
+    private boolean tail;
+    private PagedFile paged;
+    private Group root;
+    private LinkedList text;
+    private SaveService saveService;
+    private Text status;
+
+    /** Makes a Document for path, which is shown a page at a time and followed if tail is true. */
+    public Document(Path path, boolean tail) {
+        this.path = path;
+        this.tail = tail;
+    }
+
+    /** Returns the name of the file, without the directories it is in. */
+    public String name() {
+        return path.getFileName().toString();
+    }
+
+    /** Returns true once the file has been opened. */
+    public boolean isOpen() {
+        return text != null;
+    }
+
+    /** Returns the Group the text is drawn in, which is null until the Document is shown. */
+    public Group root() {
+        return root;
+    }
+
+    public LinkedList text() {
+        return text;
+    }
+
+    /** Returns true if the file is shown read only, a page at a time. */
+    public boolean isPaged() {
+        return paged != null;
+    }
+
+    /** Returns the PagedFile that shows the file, or null if it was read in like any other file. */
+    public PagedFile paged() {
+        return paged;
+    }
+
+    /** Returns the SaveService of the file, which is null if it is paged. */
+    public SaveService saveService() {
+        return saveService;
+    }
+
+    /** Returns the Text that shows whether there are unsaved changes, or where the window is in a paged file. */
+    public Text status() {
+        return status;
+    }
+
+    /** Shows the text in a window of the given size, opening the file first if it hasn't been opened yet. */
+    public void show(Rectangle cursor, int windowWidth, int windowHeight) {
+        if (!isOpen()) {
+            open(windowWidth, windowHeight);
+        }
+        text.show(cursor, windowWidth, windowHeight);
+    }
+
+    /** Throws away the nodes of the text, keeping only the text itself. */
+    public void hide() {
+        if (isOpen()) {
+            text.hide();
+        }
+    }
+
+    /** Opens the file and reads the first piece of it, or makes it if there is no such file. */
+    private void open(int windowWidth, int windowHeight) {
+        root = new Group();
+        text = new LinkedList(root, windowHeight, windowWidth);
+        status = new Text(5, 0, "");
+        status.setFill(Color.GRAY);
+        if (isHuge() || (tail && Files.exists(path))) {
+            try {
+                paged = new PagedFile(path, text, status, tail);
+                return;
+            } catch (IOException ioException) {
+                System.out.println("Error opening " + path + ".");
+            }
+        }
+        text.setLexer(Lexers.forFile(name()));
+        FileLoader loader = null;
+        Charset charset = FileLoader.DEFAULT_CHARSET;
+        boolean bom = false;
+        try {
+            File file = path.toFile();
+            if (!file.createNewFile()) {
+                // The file is left alone until the first save, so a big file can keep being read in as needed
+                loader = new FileLoader(path);
+                charset = loader.charset();
+                bom = loader.hasBom();
+            }
+        } catch (IOException ioException) {
+            System.out.println("Error opening " + path + ".");
+        }
+        if (loader != null) {
+            text.addInitial(loader);
+        }
+        saveService = new SaveService(text, path, charset, bom, status);
+        saveService.setJournal(openJournal());
+        saveService.updateStatus();
+        saveService.startAutosave();
+    }
+
+    /**
+     * Replays the edits in the journal of the file, if it has one, and writes every edit from now on down in
+     * it. Returns the Journal, or null if it couldn't be opened.
+     */
+    private Journal openJournal() {
+        if (Files.exists(Journal.journalFile(path.toAbsolutePath()))) {
+            // The edits go on top of all of the file
+            text.finishLoading();
+        }
+        try {
+            Journal journal = Journal.open(path, text.snapshot());
+            text.recover(journal.recovered());
+            text.setJournal(journal);
+            return journal;
+        } catch (IOException ioException) {
+            System.out.println("Error opening the journal of " + path + ".");
+            return null;
+        }
+    }
+
+    /** Returns true if the file is editor.pagedSize MB or more. */
+    private boolean isHuge() {
+        long megabytes = Long.getLong(PAGED_SIZE_PROPERTY, DEFAULT_PAGED_MEGABYTES);
+        try {
+            return Files.exists(path) && Files.size(path) >= megabytes << 20;
+        } catch (IOException ioException) {
+            return false;
+        }
+    }
+
+}
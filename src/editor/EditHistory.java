@@ -0,0 +1,159 @@
+package editor;
+
+import java.util.ArrayDeque;
+
+
+public class EditHistory {
+    /**
+         EditHistory remembers the edits made to the text so they can be undone and redone.
+         Each Edit only holds the characters it removed and the characters it inserted, never a copy of the whole
+         text, so undoing or redoing costs as much as the edit itself. Big edits like a replace-all hand in
+         slices of the Rope, which share its leaves instead of copying the characters.
+         Characters typed one after the other go into the same Edit, and so do backspaces one after the other, so
+         undo takes back a whole run of typing at once. A newline ends the run.
+         Every Edit counts towards a memory limit (the editor.undoLimit system property, in megabytes, 16 by
+         default). When the history goes over it, the oldest edits are forgotten first.
+    */
+
+    private static final String LIMIT_PROPERTY = "editor.undoLimit";
+    private static final int DEFAULT_LIMIT_MEGABYTES = 16;
+    private static final int EDIT_OVERHEAD = 64; // Rough number of bytes an Edit takes up besides its characters
+
+    private ArrayDeque<Edit> undoStack = new ArrayDeque<Edit>();
+    private ArrayDeque<Edit> redoStack = new ArrayDeque<Edit>();
+    private long maxBytes;
+    private long bytes;
+    private boolean merging; // Whether the next edit may be merged into the last one
+
+    /** Edit is one change to the text: removed was replaced by inserted, starting at offset. */
+    public static class Edit {
+        int offset;
+        CharSequence removed;
+        CharSequence inserted;
+        int cursorBefore;
+        int cursorAfter;
+
+        Edit(int offset, CharSequence removed, CharSequence inserted, int cursorBefore, int cursorAfter) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+            this.cursorBefore = cursorBefore;
+            this.cursorAfter = cursorAfter;
+        }
+
+        public int offset() {
+            return offset;
+        }
+
+        public CharSequence removed() {
+            return removed;
+        }
+
+        public CharSequence inserted() {
+            return inserted;
+        }
+
+        public int cursorBefore() {
+            return cursorBefore;
+        }
+
+        public int cursorAfter() {
+            return cursorAfter;
+        }
+
+        private long size() {
+            return EDIT_OVERHEAD + 2L * (removed.length() + inserted.length());
+        }
+    }
+
+    public EditHistory() {
+        this((long) Integer.getInteger(LIMIT_PROPERTY, DEFAULT_LIMIT_MEGABYTES) << 20);
+    }
+
+    public EditHistory(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Records that removed was replaced by inserted at offset, which moved the cursor from before to after. */
+    public void record(int offset, CharSequence removed, CharSequence inserted, int cursorBefore, int cursorAfter) {
+        clear(redoStack);
+        Edit last = undoStack.peekLast();
+        if (merging && last != null && merge(last, offset, removed, inserted, cursorAfter)) {
+            trim();
+            return;
+        }
+        Edit edit = new Edit(offset, removed, inserted, cursorBefore, cursorAfter);
+        undoStack.addLast(edit);
+        bytes += edit.size();
+        merging = true;
+        trim();
+    }
+
+    /** Tries to add a typed character or a backspace onto the end of last. Returns true if it did. */
+    private boolean merge(Edit last, int offset, CharSequence removed, CharSequence inserted, int cursorAfter) {
+        boolean lastTyping = last.removed.length() == 0 && last.inserted.length() > 0;
+        boolean lastDeleting = last.inserted.length() == 0 && last.removed.length() > 0;
+        long oldSize = last.size();
+        if (lastTyping && removed.length() == 0 && inserted.length() == 1
+                && offset == last.offset + last.inserted.length()
+                && last.inserted.charAt(last.inserted.length() - 1) != '\n') {
+            last.inserted = builder(last.inserted).append(inserted);
+        } else if (lastDeleting && inserted.length() == 0 && removed.length() == 1 && offset + 1 == last.offset
+                && removed.charAt(0) != '\n') {
+            last.removed = builder(last.removed).insert(0, removed);
+            last.offset = offset;
+        } else {
+            return false;
+        }
+        last.cursorAfter = cursorAfter;
+        bytes += last.size() - oldSize;
+        return true;
+    }
+
+    /** Returns characters as a StringBuilder that more characters can be added to. */
+    private static StringBuilder builder(CharSequence characters) {
+        if (characters instanceof StringBuilder) {
+            return (StringBuilder) characters;
+        }
+        return new StringBuilder(characters);
+    }
+
+    /** Returns the edit to take back, or null if there is nothing to undo. */
+    public Edit undo() {
+        merging = false;
+        Edit edit = undoStack.pollLast();
+        if (edit != null) {
+            redoStack.addLast(edit);
+        }
+        return edit;
+    }
+
+    /** Returns the edit to make again, or null if there is nothing to redo. */
+    public Edit redo() {
+        merging = false;
+        Edit edit = redoStack.pollLast();
+        if (edit != null) {
+            undoStack.addLast(edit);
+        }
+        return edit;
+    }
+
+    /** Makes sure the next edit starts a new Edit instead of being merged into the last one. */
+    public void breakMerge() {
+        merging = false;
+    }
+
+    /** Forgets the oldest edits until the history fits in maxBytes again. */
+    private void trim() {
+        while (bytes > maxBytes && undoStack.size() > 1) {
+            bytes -= undoStack.pollFirst().size();
+        }
+    }
+
+    private void clear(ArrayDeque<Edit> stack) {
+        while (!stack.isEmpty()) {
+            bytes -= stack.pollLast().size();
+        }
+    }
+
+}
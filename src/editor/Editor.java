@@ -0,0 +1,643 @@
+package editor;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
+import javafx.application.Application;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.ActionEvent;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.geometry.Orientation;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import javafx.util.Duration;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+public class Editor extends Application {
+
+    private Group root;
+    private Group textArea; // Holds the textRoot of the tab that is shown, below the tabs
+    private Group textRoot;
+    private Group statusArea;
+    private Stage stage;
+    private static final int STARTING_WINDOW_WIDTH = 500;
+    private static final int STARTING_WINDOW_HEIGHT = 500;
+    private static final int TAB_BAR_HEIGHT = 30;
+    private static final String RENDERER_PROPERTY = "editor.renderer";
+    private static int WINDOW_WIDTH = STARTING_WINDOW_WIDTH;
+    private static int WINDOW_HEIGHT= STARTING_WINDOW_HEIGHT;
+    private static ArrayList<Document> documents = new ArrayList<Document>();
+    private static ArrayList<ToggleButton> tabs = new ArrayList<ToggleButton>();
+    private static Document current; // The document in the tab that is shown
+    private static LinkedList text; // The text of the current document
+    private static Rectangle cursor;
+    private static int scrollBarWidth;
+    private static int usableScreenWidth;
+    private static int wrapWidth; // The width the text is wrapped at, which catches up once resizing stops
+    private static final Duration REWRAP_DELAY = Duration.millis(150);
+    private static PauseTransition rewrapDelay;
+    private static ScrollBar scrollBar;
+    private static Minimap minimap;
+    private static SaveService saveService;
+    private static Text status;
+    private static FindBar findBar;
+    private static MetricsOverlay metricsOverlay;
+    private static final Metrics.Operation KEY = Metrics.operation("key");
+    private static final Metrics.Operation KEY_TO_PAINT = Metrics.operation("keyToPaint");
+    private static long firstUnpaintedKey = -1; // When the first key since the last frame came in, -1 if none
+
+    /** An EventHandler to handle keys that get pressed. */
+    private class KeyEventHandler implements EventHandler<KeyEvent> {
+
+        @Override
+        public void handle(KeyEvent keyEvent) {
+            if (findBar.hasFocus() && !keyEvent.isShortcutDown()) {
+                // Typing goes into the find box
+                return;
+            }
+            if (firstUnpaintedKey < 0) {
+                firstUnpaintedKey = System.nanoTime();
+            }
+            KEY.start();
+            if (keyEvent.getEventType() == KeyEvent.KEY_TYPED) {
+                // Use the KEY_TYPED event rather than KEY_PRESSED for letter keys, because with
+                // the KEY_TYPED event, javafx handles the "Shift" key and associated
+                // capitalization.
+
+                String characterTyped = keyEvent.getCharacter();
+                if (characterTyped.length() > 0 && characterTyped.charAt(0) != 8 && !keyEvent.isShortcutDown()) {
+                    // Ignore control keys, which have non-zero length, as well as the backspace
+                    // key, which is represented as a character of value = 8 on Windows.
+
+                    text.add(characterTyped);
+                    keyEvent.consume();
+
+                }
+            } else if (keyEvent.getEventType() == KeyEvent.KEY_PRESSED) {
+                // Arrow keys should be processed using the KEY_PRESSED event, because KEY_PRESSED
+                // events have a code that we can check (KEY_TYPED events don't have an associated
+                // KeyCode).
+                KeyCode code = keyEvent.getCode();
+                if (keyEvent.isShortcutDown()) {
+
+                    if (code == KeyCode.TAB || code == KeyCode.PAGE_DOWN || code == KeyCode.PAGE_UP) {
+                        // Shows the next tab, or the one before with SHIFT + TAB or PAGE UP
+                        boolean back = code == KeyCode.PAGE_UP || (code == KeyCode.TAB && keyEvent.isShiftDown());
+                        int index = documents.indexOf(current) + (back ? -1 : 1);
+                        show(documents.get((index + documents.size()) % documents.size()));
+                        keyEvent.consume();
+
+                    } else if (code == KeyCode.PLUS || code == KeyCode.EQUALS) {
+                        // Increases the font size by 4
+                        text.changeFontSize(4);
+
+                    } else if (code == KeyCode.MINUS) {
+                        // Decreases the font size by 4
+                        text.changeFontSize(-4);
+
+                    } else if (code == KeyCode.S && saveService != null) {
+                        // Saves the file in the background, unless it is paged and read only
+                        saveService.save();
+
+                    } else if (code == KeyCode.Z && keyEvent.isShiftDown()) {
+                        // Redoes the last undone edit
+                        text.redo();
+
+                    } else if (code == KeyCode.Z) {
+                        // Undoes the last edit
+                        text.undo();
+
+                    } else if (code == KeyCode.Y) {
+                        // Redoes the last undone edit
+                        text.redo();
+
+                    } else if (code == KeyCode.F && !current.isPaged()) {
+                        // Opens the find box, which can't search a paged file
+                        findBar.open();
+
+                    } else if (code == KeyCode.C) {
+                        // Copies the selection to the clipboard
+                        copy();
+
+                    } else if (code == KeyCode.X) {
+                        // Copies the selection to the clipboard and deletes it
+                        copy();
+                        text.deleteSelection();
+
+                    } else if (code == KeyCode.V) {
+                        // Pastes the clipboard in one go, however long it is
+                        Clipboard clipboard = Clipboard.getSystemClipboard();
+                        if (clipboard.hasString()) {
+                            text.paste(clipboard.getString().replace("\r\n", "\n"));
+                        }
+                    }
+
+                } else {
+                    if (code == KeyCode.BACK_SPACE) {
+                        // Deletes the character before the cursor
+                        text.delete();
+
+                    } else if (code == KeyCode.HOME) {
+                        // Moves cursor so that it is at the beginning of the line it is on
+                        select(keyEvent.isShiftDown());
+                        text.homeKey();
+
+                    } else if (code == KeyCode.END) {
+                        // Moves cursor so that it is at the end of the line it is on
+                        select(keyEvent.isShiftDown());
+                        text.endKey();
+
+                    } else if (code == KeyCode.ENTER) {
+                        // Adds a newline to the text
+                        text.add("\n");
+
+                    } else if (code == KeyCode.UP) {
+                        // Moves the cursor up
+                        select(keyEvent.isShiftDown());
+                        text.moveUp();
+
+                    } else if (code == KeyCode.DOWN) {
+                        // Moves the cursor down
+                        select(keyEvent.isShiftDown());
+                        text.moveDown();
+
+                    } else if (code == KeyCode.RIGHT) {
+                        // Moves the cursor to the right
+                        select(keyEvent.isShiftDown());
+                        text.moveRight();
+
+                    } else if (code == KeyCode.LEFT) {
+                        // Moves the cursor to the left
+                        select(keyEvent.isShiftDown());
+                        text.moveLeft();
+
+                    } else if (code == KeyCode.F3 && keyEvent.isShiftDown()) {
+                        // Moves the cursor to the previous match of the search
+                        findBar.findPrevious();
+
+                    } else if (code == KeyCode.F3) {
+                        // Moves the cursor to the next match of the search
+                        findBar.findNext();
+
+                    } else if (code == KeyCode.ESCAPE) {
+                        // Takes away every cursor but the main one
+                        text.removeOtherCursors();
+
+                    } else if (code == KeyCode.F12) {
+                        // Shows or hides where the time goes
+                        metricsOverlay.toggle();
+
+                    }
+                }
+            }
+            // The text is laid out and the scroll bar updated by the layout pulse, once per frame
+            KEY.stop();
+        }
+
+        /** Makes the cursor movement that comes next select the text it goes over if shift is true. */
+        private void select(boolean shift) {
+            if (shift) {
+                text.startSelection();
+            } else {
+                text.clearSelection();
+            }
+        }
+    }
+
+    /** Puts the selected text on the clipboard. */
+    private void copy() {
+        if (text.hasSelection()) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(text.selectedText());
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+    /**
+     * Updates the size of the window. The text is only wrapped again at a new width once the width has stopped
+     * changing for REWRAP_DELAY, so dragging the edge of the window doesn't wrap it over and over.
+     */
+    private void updateWindowSize(int newWidth, int newHeight) {
+        WINDOW_WIDTH = newWidth;
+        WINDOW_HEIGHT = newHeight;
+        usableScreenWidth = WINDOW_WIDTH - scrollBarWidth - Minimap.WIDTH;
+        text.updateWindowSize(wrapWidth, textHeight());
+        if (usableScreenWidth != wrapWidth) {
+            rewrapDelay.playFromStart();
+        }
+    }
+
+    /** Returns how tall the part of the window below the tabs is. */
+    private static int textHeight() {
+        return WINDOW_HEIGHT - TAB_BAR_HEIGHT;
+    }
+
+    /** Updates the scrollbar. For a paged file it goes over the bytes of the file instead of the text's height. */
+    private void updateScrollBar() {
+        if (current.isPaged()) {
+            long size = current.paged().size();
+            scrollBar.setMax(size);
+            scrollBar.setUnitIncrement(PagedFile.STEP);
+            scrollBar.setBlockIncrement(size / 10);
+            return;
+        }
+        int end = text.getEnd() - textHeight();
+        scrollBar.setMax(end);
+        scrollBar.setUnitIncrement(end / 10);
+        scrollBar.setBlockIncrement(end / 10);
+    }
+
+    /** Scrolls so that the cursor is in the middle of the window, if it isn't in the window already. */
+    private void scrollToCursor() {
+        int y = text.cursorY();
+        double top = scrollBar.getValue();
+        if (y < top || y + cursor.getHeight() > top + textHeight()) {
+            scrollBar.setValue(Math.max(0, Math.min(scrollBar.getMax(), y - textHeight() / 2)));
+        }
+    }
+
+    /**
+     * An EventHandler to handle blinking the cursor. The cursor is a node of its own on top of the text, and
+     * only it is shown and hidden, so blinking doesn't draw the lines under it again.
+     */
+    private class CursorHandler implements EventHandler<ActionEvent> {
+        private boolean shown = true;
+
+        @Override
+        public void handle(ActionEvent event) {
+            shown = !shown;
+            cursor.setVisible(shown);
+        }
+    }
+
+    /** Makes the cursor blink, on and off every half second. */
+    public void makeCursorBlink() {
+        // Create a Timeline that will call the "handle" function of CursorHandler
+        // every 1 second.
+        final Timeline timeline = new Timeline();
+        // The cursor should continue blinking forever.
+        timeline.setCycleCount(Timeline.INDEFINITE);
+        CursorHandler cursorChange = new CursorHandler();
+        KeyFrame keyFrame = new KeyFrame(Duration.seconds(.5), cursorChange);
+        timeline.getKeyFrames().add(keyFrame);
+        timeline.play();
+    }
+
+    /**
+     * Lays out the text once per frame if it changed, however many keys came in since the last frame, and
+     * then updates everything that depends on the layout.
+     */
+    public void startLayoutPulse() {
+        AnimationTimer pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (current.isPaged()) {
+                    // A followed file moves to its new end by itself
+                    text.layout();
+                    updateScrollBar();
+                    if ((long) scrollBar.getValue() != current.paged().position()) {
+                        scrollBar.setValue(current.paged().position());
+                    }
+                } else if (text.layout()) {
+                    updateScrollBar();
+                    if (text.scrollY() != (int) scrollBar.getValue()) {
+                        // Wrapping the text again moved the line at the top of the window
+                        scrollBar.setValue(text.scrollY());
+                    }
+                    saveService.updateStatus();
+                    findBar.update();
+                }
+                minimap.update();
+            }
+        };
+        pulse.start();
+    }
+
+    /**
+     * Measures how long it takes from a key coming in until the frame that shows it. The scene has been laid
+     * out by the time the listener runs, and only has to be drawn.
+     */
+    private void measureKeyToPaint(Scene scene) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                if (firstUnpaintedKey >= 0) {
+                    KEY_TO_PAINT.record(System.nanoTime() - firstUnpaintedKey, 0);
+                    firstUnpaintedKey = -1;
+                }
+            }
+        });
+    }
+
+    /**
+     * An EventHandler to handle mouse clicks. Pressing the mouse moves the cursor there, and dragging it
+     * selects from there to wherever the mouse is. SHIFT + click selects from the cursor. ALT + click adds
+     * another cursor, and dragging with ALT selects a block with a cursor on every line.
+     */
+    private class MouseClickEventHandler implements EventHandler<MouseEvent> {
+        int mouseX;
+        int mouseY;
+        boolean onText; // Whether the mouse was pressed on the text rather than the scroll bar or the tabs
+        boolean column; // Whether ALT was down when the mouse was pressed
+        int pressX;
+        int pressY; // Where the mouse was pressed, in the text rather than the window
+
+        @Override
+        public void handle(MouseEvent mouseEvent) {
+            boolean pressed = mouseEvent.getEventType() == MouseEvent.MOUSE_PRESSED;
+            if (pressed) {
+                onText = mouseEvent.getX() < usableScreenWidth && mouseEvent.getY() >= TAB_BAR_HEIGHT;
+                column = mouseEvent.isAltDown();
+            }
+            if (!onText) {
+                // The scroll bar and the tabs handle their own mouse events
+                return;
+            }
+            if (findBar.hasFocus()) {
+                // Clicking on the text makes typing go to the text again
+                root.requestFocus();
+            }
+            mouseX = (int) Math.round(mouseEvent.getX());
+            mouseY = (int) Math.round(mouseEvent.getY()) - TAB_BAR_HEIGHT;
+            if (column) {
+                if (pressed) {
+                    pressX = mouseX;
+                    pressY = mouseY + text.scrollY();
+                    text.clearSelection();
+                    text.addCursor(mouseX, pressY);
+                } else {
+                    text.selectColumn(pressX, pressY, mouseX, mouseY + text.scrollY());
+                }
+                return;
+            }
+            if (!pressed || mouseEvent.isShiftDown()) {
+                text.startSelection();
+            } else {
+                text.clearSelection();
+            }
+            // The text is scrolled up by the top of the window
+            text.moveCursor(mouseX, mouseY + text.scrollY());
+        }
+    }
+
+    /**
+     * Shows document in place of the one that is shown now. The one that was shown throws away its nodes, and
+     * document is opened if this is the first time it is shown.
+     */
+    private void show(Document document) {
+        if (document == current) {
+            return;
+        }
+        if (current != null) {
+            current.hide();
+        }
+        current = document;
+        document.show(cursor, wrapWidth, textHeight());
+        text = document.text();
+        saveService = document.saveService();
+        status = document.status();
+        status.setY(WINDOW_HEIGHT - 5);
+        statusArea.getChildren().setAll(status);
+        textRoot = document.root();
+        textArea.getChildren().setAll(textRoot);
+        if (document.isPaged() && findBar.isOpen()) {
+            findBar.close();
+        }
+        findBar.setText(text);
+        // A paged file is only ever partly read, so there is no picture of all of it
+        minimap.setText(document.isPaged() ? null : text);
+        // The document is scrolled to where it was when it was hidden
+        int scrollY = text.scrollY();
+        updateScrollBar();
+        textRoot.setLayoutY(-scrollY);
+        scrollBar.setValue(document.isPaged() ? document.paged().position() : scrollY);
+        tabs.get(documents.indexOf(document)).setSelected(true);
+        stage.setTitle("Editor 2.0   " + document.name());
+    }
+
+    /** Makes a tab for every document, which shows it when it is clicked. */
+    private HBox makeTabs() {
+        HBox tabBar = new HBox(2);
+        tabBar.setPrefHeight(TAB_BAR_HEIGHT);
+        ToggleGroup group = new ToggleGroup();
+        for (final Document document : documents) {
+            final ToggleButton tab = new ToggleButton(document.name());
+            tab.setToggleGroup(group);
+            tab.setFocusTraversable(false);
+            tab.setOnAction(new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent event) {
+                    // Clicking the tab that is shown would unselect it
+                    tab.setSelected(true);
+                    show(document);
+                    root.requestFocus();
+                }
+            });
+            tabs.add(tab);
+            tabBar.getChildren().add(tab);
+        }
+        return tabBar;
+    }
+
+    @Override
+    public void start(Stage primaryStage){
+        stage = primaryStage;
+        // -Deditor.renderer=canvas paints the lines on Canvases instead of making a Text node for each
+        LinkedList.setDrawOnCanvas("canvas".equals(System.getProperty(RENDERER_PROPERTY)));
+
+        // Create a Node that will be the parent of all things displayed on the screen.
+        root = new Group();
+        // The text of the tab that is shown goes below the tabs, and is cut off where they start
+        textArea = new Group();
+        textArea.setLayoutY(TAB_BAR_HEIGHT);
+        final Rectangle clip = new Rectangle(WINDOW_WIDTH, textHeight());
+        textArea.setClip(clip);
+        root.getChildren().add(textArea);
+        // The Scene represents the window: its height and width will be the height and width
+        // of the window displayed.
+        Scene scene = new Scene(root, WINDOW_WIDTH, WINDOW_HEIGHT, Color.WHITE);
+
+        // To get information about what keys the user is pressing, create an EventHandler.
+        // EventHandler subclasses must override the "handle" function, which will be called
+        // by javafx.
+        EventHandler<KeyEvent> keyEventHandler = new KeyEventHandler();
+        // Register the event handler to be called for all KEY_PRESSED and KEY_TYPED events.
+        scene.setOnKeyTyped(keyEventHandler);
+        scene.setOnKeyPressed(keyEventHandler);
+
+
+        // Initialize the cursor, which is handed to the text of whichever tab is shown
+        // Call makeCursorBlink() to make cursor blink forever
+        cursor = new Rectangle(1, 1);
+        makeCursorBlink();
+
+        // Shows whether the document that is shown has unsaved changes in the bottom left corner
+        statusArea = new Group();
+        root.getChildren().add(statusArea);
+
+        // The find box sits in the top right corner, on top of the text
+        findBar = new FindBar(new Runnable() {
+            @Override
+            public void run() {
+                if (current.isPaged()) {
+                    // A replace all finished after a paged file was shown
+                    return;
+                }
+                updateScrollBar();
+                saveService.updateStatus();
+                scrollToCursor();
+            }
+        });
+        findBar.node().setLayoutY(TAB_BAR_HEIGHT + 5);
+        root.getChildren().add(findBar.node());
+
+        // One tab for every file given, along the top
+        root.getChildren().add(makeTabs());
+
+        // F12 shows how long rendering, layout, saving and so on take
+        metricsOverlay = new MetricsOverlay(root);
+        metricsOverlay.node().setLayoutY(TAB_BAR_HEIGHT + 5);
+        root.getChildren().add(metricsOverlay.node());
+        Metrics.registerIfAsked();
+        measureKeyToPaint(scene);
+
+        // Add the EventHandler for mouse clicks and drags.
+        MouseClickEventHandler mouseHandler = new MouseClickEventHandler();
+        scene.setOnMousePressed(mouseHandler);
+        scene.setOnMouseDragged(mouseHandler);
+
+        // Creating Scroll Bar
+        scrollBar = new ScrollBar();
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setLayoutY(TAB_BAR_HEIGHT);
+        scrollBar.setPrefHeight(textHeight());
+        scrollBar.setMin(0);
+        scrollBar.setMax(textHeight());
+        scrollBar.setValue(0);
+        root.getChildren().add(scrollBar);
+        scrollBarWidth = (int) scrollBar.getLayoutBounds().getWidth();
+        usableScreenWidth = WINDOW_WIDTH - scrollBarWidth - Minimap.WIDTH;
+        wrapWidth = usableScreenWidth;
+        rewrapDelay = new PauseTransition(REWRAP_DELAY);
+        rewrapDelay.setOnFinished(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                // Tabs that aren't shown are wrapped at the new width when they are shown again
+                wrapWidth = usableScreenWidth;
+                text.updateWindowSize(wrapWidth, textHeight());
+            }
+        });
+        scrollBar.setLayoutX(usableScreenWidth + Minimap.WIDTH);
+        findBar.setWindowWidth(usableScreenWidth);
+
+        // A small picture of the whole text goes between the text and the scroll bar
+        minimap = new Minimap(new Minimap.Listener() {
+            @Override
+            public void jumped(int scrollY) {
+                scrollBar.setValue(Math.max(0, Math.min(scrollBar.getMax(), scrollY)));
+            }
+        });
+        minimap.node().setLayoutX(usableScreenWidth);
+        minimap.node().setLayoutY(TAB_BAR_HEIGHT);
+        minimap.setHeight(textHeight());
+        root.getChildren().add(minimap.node());
+        scrollBar.valueProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(
+                    ObservableValue<? extends Number> observable,
+                    Number oldValue, Number newValue) {
+                if (current.isPaged()) {
+                    // Pages in the part of the file at that byte if it isn't in yet
+                    current.paged().scrollTo(newValue.longValue());
+                } else {
+                    text.scrollTo(newValue.intValue());
+                    // Scrolling near the end of a big file reads more of it in
+                    updateScrollBar();
+                }
+                textRoot.setLayoutY(-text.scrollY());
+            }
+        });
+
+        // Dealing with window resizing
+        scene.widthProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observable, Number oldScreenWidth, Number newScreenWidth) {
+                updateWindowSize(newScreenWidth.intValue(), WINDOW_HEIGHT);
+                scrollBar.setLayoutX(usableScreenWidth + Minimap.WIDTH);
+                minimap.node().setLayoutX(usableScreenWidth);
+                findBar.setWindowWidth(usableScreenWidth);
+                clip.setWidth(WINDOW_WIDTH);
+            }
+        });
+
+        scene.heightProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observable, Number oldScreenHeight, Number newScreenHeight) {
+                updateWindowSize(WINDOW_WIDTH, newScreenHeight.intValue());
+                scrollBar.setPrefHeight(textHeight());
+                minimap.setHeight(textHeight());
+                status.setY(WINDOW_HEIGHT - 5);
+                clip.setHeight(textHeight());
+            }
+        });
+
+        // Only the first file is read now, the others when their tab is first shown
+        show(documents.get(0));
+        startLayoutPulse();
+
+        // This is boilerplate, necessary to setup the window where things are displayed.
+        primaryStage.setScene(scene);
+        primaryStage.show();
+    }
+
+    @Override
+    public void stop() {
+        // Lets a save that is still being written finish before the program exits. One still waiting for the
+        // rest of a big file to be read never starts, but its edits are still in the journal
+        SaveService.shutdown();
+        // The journals are written out after the saves, which drop the edits they have from them
+        Journal.shutdown();
+        findBar.shutdown();
+        metricsOverlay.refresh();
+        Metrics.writeIfAsked();
+    }
+
+    public static void main(String[] args) {
+        // there should be at least one argument, the names of the files
+        // every file gets a tab, and a file that doesn't exist is made when its tab is first shown
+        // --tail before a file name shows that file read only and follows it as it grows
+        boolean tail = false;
+        for (String arg : args) {
+            if (arg.equals("--tail")) {
+                tail = true;
+            } else {
+                documents.add(new Document(Paths.get(arg), tail));
+                tail = false;
+            }
+        }
+        if (documents.isEmpty()) {
+            System.out.println("No filename was provided.");
+            System.exit(1);
+        }
+        launch(args);
+    }
+
+}
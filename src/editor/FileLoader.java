@@ -0,0 +1,203 @@
+package editor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+public class FileLoader {
+    /**
+         A FileLoader reads a file from disk and hands its text over in pieces.
+         The charset comes from the byte order mark at the start of the file if there is one (UTF-8, UTF-16BE or
+         UTF-16LE), and is UTF-8 otherwise. Bytes that aren't valid in that charset become U+FFFD.
+         Small files are read in 64 KB blocks and handed over all at once by the first call to next().
+         Files of MAP_THRESHOLD bytes or more are memory-mapped a window at a time instead, and every call to next()
+         only decodes the next CHUNK_SIZE characters, so the editor can show the start of the file straight away and
+         ask for the rest as it is needed.
+    */
+
+    public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final long MAP_THRESHOLD = 16L << 20;
+    private static final long MAP_WINDOW = 64L << 20;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final Metrics.Operation LOAD = Metrics.operation("load");
+
+    private FileChannel channel;
+    private long size;
+    private Charset charset;
+    private int bomLength;
+    private CharsetDecoder decoder;
+    private CharBuffer out;
+    private long position; // The first byte that hasn't been decoded yet
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean done;
+
+    public FileLoader(Path path) throws IOException {
+        this(path, DEFAULT_CHARSET);
+    }
+
+    /** Opens path for reading. fallback is the charset used if the file has no byte order mark. */
+    public FileLoader(Path path, Charset fallback) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        detectCharset(fallback);
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        out = CharBuffer.allocate((int) (BLOCK_SIZE * decoder.maxCharsPerByte()) + 1);
+        position = bomLength;
+    }
+
+    /** Looks for a byte order mark and picks the charset from it. */
+    private void detectCharset(Charset fallback) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(3);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // Keep reading until we have three bytes or the file ends
+        }
+        int length = head.position();
+        int b0 = length > 0 ? head.get(0) & 0xFF : -1;
+        int b1 = length > 1 ? head.get(1) & 0xFF : -1;
+        int b2 = length > 2 ? head.get(2) & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            charset = StandardCharsets.UTF_8;
+            bomLength = 3;
+        } else if (b0 == 0xFE && b1 == 0xFF) {
+            charset = StandardCharsets.UTF_16BE;
+            bomLength = 2;
+        } else if (b0 == 0xFF && b1 == 0xFE) {
+            charset = StandardCharsets.UTF_16LE;
+            bomLength = 2;
+        } else {
+            charset = fallback;
+            bomLength = 0;
+        }
+    }
+
+    /** Returns the charset the file is being read with. */
+    public Charset charset() {
+        return charset;
+    }
+
+    /** Returns true if the file started with a byte order mark. */
+    public boolean hasBom() {
+        return bomLength > 0;
+    }
+
+    /** Returns how many bytes the byte order mark takes up, 0 if there is none. */
+    public int bomLength() {
+        return bomLength;
+    }
+
+    /** Returns true if the file is big enough to be memory-mapped and read a piece at a time. */
+    public boolean isMapped() {
+        return size >= MAP_THRESHOLD;
+    }
+
+    /** Returns true if there is still text that next() hasn't handed over. */
+    public boolean hasMore() {
+        return !done;
+    }
+
+    /** Returns the next piece of the text: all of it for a small file, the next CHUNK_SIZE characters otherwise. */
+    public String next() throws IOException {
+        if (done) {
+            return "";
+        }
+        LOAD.start();
+        try {
+            if (isMapped()) {
+                return nextMapped();
+            }
+            return readAll();
+        } finally {
+            LOAD.stop();
+        }
+    }
+
+    /** Stops reading and lets go of the file. */
+    public void close() throws IOException {
+        done = true;
+        window = null;
+        channel.close();
+    }
+
+    /** Reads the rest of the file in blocks of BLOCK_SIZE bytes. */
+    private String readAll() throws IOException {
+        StringBuilder text = new StringBuilder((int) Math.min(size, Integer.MAX_VALUE - 8));
+        ByteBuffer in = ByteBuffer.allocate(BLOCK_SIZE);
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            int read = channel.read(in, position);
+            if (read > 0) {
+                position += read;
+            }
+            endOfInput = read < 0;
+            in.flip();
+            decode(in, endOfInput, text);
+            in.compact();
+        }
+        finish(text);
+        return text.toString();
+    }
+
+    /** Decodes the next CHUNK_SIZE or so characters out of the mapped file. */
+    private String nextMapped() throws IOException {
+        StringBuilder text = new StringBuilder(CHUNK_SIZE + out.capacity());
+        while (text.length() < CHUNK_SIZE && !done) {
+            if (window == null || !window.hasRemaining()) {
+                if (position >= size) {
+                    finish(text);
+                    break;
+                }
+                // A character split across the end of the last window is decoded again from its first byte
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+            }
+            boolean lastWindow = windowStart + window.limit() == size;
+            CoderResult result = decoder.decode(window, out, lastWindow);
+            drain(text);
+            position = windowStart + window.position();
+            if (result.isUnderflow() && window.hasRemaining()) {
+                window = null;
+            }
+        }
+        return text.toString();
+    }
+
+    /** Decodes everything in in, leaving the bytes of a character that got cut off at the end. */
+    private void decode(ByteBuffer in, boolean endOfInput, StringBuilder text) {
+        while (decoder.decode(in, out, endOfInput).isOverflow()) {
+            drain(text);
+        }
+        drain(text);
+    }
+
+    /** Flushes whatever the decoder is still holding on to and marks the file as finished. */
+    private void finish(StringBuilder text) throws IOException {
+        decoder.decode(ByteBuffer.allocate(0), out, true);
+        while (decoder.flush(out).isOverflow()) {
+            drain(text);
+        }
+        drain(text);
+        close();
+    }
+
+    /** Moves the decoded characters out of the CharBuffer. */
+    private void drain(StringBuilder text) {
+        out.flip();
+        text.append(out);
+        out.clear();
+    }
+
+}
@@ -0,0 +1,154 @@
+package editor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+public class FileSaver {
+    /**
+         FileSaver writes a Rope to disk without ever leaving a half-written file behind.
+         The text is encoded a leaf at a time into one big direct ByteBuffer, which goes out through a FileChannel
+         to a temporary file next to the target. Once everything is on disk (force), the temporary file is renamed
+         over the target in one atomic step. If the editor dies part way through, the old file is still there.
+         The temporary file gets the permissions of the file it replaces, or those of any new file (the umask
+         decides) if there is none yet. A target that is a symbolic link stays one: the file it points to is
+         the one replaced, and the temporary file goes next to that.
+    */
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Metrics.Operation SAVE = Metrics.operation("save");
+
+    /** Saves text to target in charset, starting with a byte order mark if bom is true. */
+    public static void save(Rope text, Path target, Charset charset, boolean bom) throws IOException {
+        SAVE.start();
+        try {
+            saveTo(text, target, charset, bom);
+        } finally {
+            SAVE.stop();
+        }
+    }
+
+    /** Does the work of save(). */
+    private static void saveTo(Rope text, Path target, Charset charset, boolean bom) throws IOException {
+        // Saving through a symbolic link replaces the file it points to, not the link
+        Path absolute = Files.exists(target) ? target.toRealPath() : target.toAbsolutePath();
+        Path dir = absolute.getParent();
+        Path temp = createTemp(dir, "." + absolute.getFileName());
+        try {
+            write(text, temp, charset, bom);
+            copyPermissions(absolute, temp);
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException atomicMoveException) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        syncDirectory(dir);
+    }
+
+    /**
+     * Makes an empty file in dir whose name starts with prefix and is new. Unlike Files.createTempFile, which
+     * only lets its owner read it, it gets the same permissions as any other new file.
+     */
+    private static Path createTemp(Path dir, String prefix) throws IOException {
+        while (true) {
+            Path temp = dir.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.newByteChannel(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return temp;
+            } catch (FileAlreadyExistsException alreadyExistsException) {
+                // Another temporary file has that name, so pick another one
+            }
+        }
+    }
+
+    /** Encodes text into file and forces it onto the disk. */
+    private static void write(Rope text, Path file, Charset charset, boolean bom) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (bom) {
+                out.put(byteOrderMark(charset));
+            }
+            CharBuffer carry = null;
+            for (CharBuffer chunk : text.chunks()) {
+                if (carry != null) {
+                    // The last chunk ended with half of a surrogate pair, so put it in front of this one
+                    chunk = CharBuffer.allocate(carry.remaining() + chunk.remaining()).put(carry).put(chunk).flip();
+                }
+                while (encoder.encode(chunk, out, false).isOverflow()) {
+                    drain(out, channel);
+                }
+                carry = chunk.hasRemaining() ? chunk : null;
+            }
+            CharBuffer rest = carry != null ? carry : CharBuffer.allocate(0);
+            while (encoder.encode(rest, out, true).isOverflow()) {
+                drain(out, channel);
+            }
+            while (encoder.flush(out).isOverflow()) {
+                drain(out, channel);
+            }
+            drain(out, channel);
+            channel.force(true);
+        }
+    }
+
+    /** Writes everything in out to channel and empties out. */
+    private static void drain(ByteBuffer out, FileChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static byte[] byteOrderMark(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_16BE)) {
+            return new byte[] {(byte) 0xFE, (byte) 0xFF};
+        } else if (charset.equals(StandardCharsets.UTF_16LE)) {
+            return new byte[] {(byte) 0xFF, (byte) 0xFE};
+        } else if (charset.equals(StandardCharsets.UTF_8)) {
+            return new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        }
+        return new byte[0];
+    }
+
+    /** Gives the temporary file the same permissions as the file it is replacing. */
+    private static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from)) {
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            }
+        } catch (UnsupportedOperationException | IOException permissionException) {
+            // Not a POSIX file system, the temporary file keeps the default permissions
+        }
+    }
+
+    /** Forces the rename itself onto the disk. Not every platform lets you open a directory, which is fine. */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException syncException) {
+            // The rename still happened, it just might not be on disk yet
+        }
+    }
+
+}
@@ -0,0 +1,324 @@
+package editor;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.text.Text;
+
+import java.util.regex.PatternSyntaxException;
+
+
+public class FindBar {
+    /**
+         The FindBar is the box at the top of the window for searching the text (CTRL + F).
+         The search starts over on a Searcher every time the query, the regex box or the text changes, and the
+         matches are highlighted as they come in. ENTER (or F3) moves the cursor to the end of the next match,
+         SHIFT + ENTER to the end of the one before, and ESCAPE closes the box.
+         Replace all works out the new text in the background and then makes it one edit, so it is laid out
+         once and undone in one go.
+         Both need all of the text, so if part of a big file still hasn't been read, they wait for the rest to
+         be read in the background first.
+    */
+
+    private static final int WIDTH = 640;
+
+    private HBox box;
+    private TextField field;
+    private TextField replaceField;
+    private CheckBox regexBox;
+    private Text count;
+    private LinkedList text;
+    private Searcher searcher = new Searcher();
+    private Matches matches;
+    private Runnable changed;
+    private LinkedList loading; // The text whose rest is being read in before it is searched, null if none
+
+    /**
+     * Makes a FindBar, which searches nothing until setText() is called. changed runs whenever the FindBar moved
+     * the cursor or changed the text.
+     */
+    public FindBar(Runnable changed) {
+        this.changed = changed;
+        field = new TextField();
+        field.setPrefColumnCount(14);
+        field.setPromptText("Find");
+        replaceField = new TextField();
+        replaceField.setPrefColumnCount(10);
+        replaceField.setPromptText("Replace with");
+        regexBox = new CheckBox("Regex");
+        Button replaceButton = new Button("Replace all");
+        count = new Text();
+        box = new HBox(6, field, replaceField, regexBox, replaceButton, count);
+        box.setPadding(new Insets(4));
+        box.setStyle("-fx-background-color: white; -fx-border-color: lightgray;");
+        box.setLayoutY(5);
+        box.setVisible(false);
+
+        field.textProperty().addListener(new ChangeListener<String>() {
+            @Override
+            public void changed(ObservableValue<? extends String> observable, String oldQuery, String newQuery) {
+                search();
+            }
+        });
+        regexBox.selectedProperty().addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+                search();
+            }
+        });
+        field.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                findNext();
+            }
+        });
+        EventHandler<ActionEvent> replaceAll = new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                replaceAll();
+            }
+        };
+        replaceField.setOnAction(replaceAll);
+        replaceButton.setOnAction(replaceAll);
+        EventHandler<KeyEvent> keys = new EventHandler<KeyEvent>() {
+            @Override
+            public void handle(KeyEvent keyEvent) {
+                if (keyEvent.getCode() == KeyCode.ESCAPE) {
+                    close();
+                    keyEvent.consume();
+                } else if (keyEvent.getCode() == KeyCode.ENTER && keyEvent.isShiftDown()) {
+                    findPrevious();
+                    keyEvent.consume();
+                }
+            }
+        };
+        field.setOnKeyPressed(keys);
+        replaceField.setOnKeyPressed(keys);
+    }
+
+    /** Returns the node to add to the scene. */
+    public Node node() {
+        return box;
+    }
+
+    /** Moves the box to the right side of a window that is width wide. */
+    public void setWindowWidth(int width) {
+        box.setLayoutX(Math.max(0, width - WIDTH));
+    }
+
+    /** Makes the FindBar search newText instead of the text it searched so far, for when another tab is shown. */
+    public void setText(LinkedList newText) {
+        searcher.cancel();
+        matches = null;
+        if (text != null) {
+            text.setMatches(null);
+        }
+        text = newText;
+        if (isOpen()) {
+            search();
+        } else {
+            count.setText("");
+        }
+    }
+
+    /** Shows the box and starts searching for whatever is in it. */
+    public void open() {
+        box.setVisible(true);
+        field.requestFocus();
+        field.selectAll();
+        search();
+    }
+
+    /** Hides the box and the highlights. */
+    public void close() {
+        box.setVisible(false);
+        searcher.cancel();
+        matches = null;
+        text.setMatches(null);
+        box.getParent().requestFocus();
+    }
+
+    public boolean isOpen() {
+        return box.isVisible();
+    }
+
+    /** Returns true if typing goes into the FindBar. */
+    public boolean hasFocus() {
+        return field.isFocused() || replaceField.isFocused();
+    }
+
+    /** Searches again if the text changed since the last search. Should be called after every edit. */
+    public void update() {
+        if (isOpen() && matches != null && matches.version() != text.version()) {
+            search();
+        }
+    }
+
+    /** Starts a new search, throwing away the matches of the last one. */
+    private void search() {
+        String query = field.getText();
+        if (query.isEmpty()) {
+            searcher.cancel();
+            matches = null;
+            text.setMatches(null);
+            count.setText("");
+            return;
+        }
+        if (!text.isLoaded()) {
+            // Matches further down than what has been read in so far would be missed
+            searcher.cancel();
+            matches = null;
+            text.setMatches(null);
+            count.setText("Reading file...");
+            searchWhenLoaded();
+            return;
+        }
+        try {
+            matches = searcher.search(text.snapshot(), text.version(), query, regexBox.isSelected(),
+                    new Searcher.Listener() {
+                        @Override
+                        public void found(Matches found) {
+                            if (found == matches) {
+                                text.setMatches(found);
+                                showCount(-1);
+                            }
+                        }
+                    });
+            text.setMatches(matches);
+            showCount(-1);
+        } catch (PatternSyntaxException patternException) {
+            searcher.cancel();
+            matches = null;
+            text.setMatches(null);
+            count.setText("Bad pattern");
+        }
+    }
+
+    /** Searches for whatever is in the box once all of the text has been read, if it is still shown then. */
+    private void searchWhenLoaded() {
+        if (loading == text) {
+            return;
+        }
+        loading = text;
+        final LinkedList waiting = text;
+        text.finishLoading(new Runnable() {
+            @Override
+            public void run() {
+                if (loading == waiting) {
+                    loading = null;
+                }
+                if (waiting == text && isOpen()) {
+                    search();
+                }
+            }
+        });
+    }
+
+    /** Replaces every match with what is in the replace box, in the background. */
+    private void replaceAll() {
+        String query = field.getText();
+        if (query.isEmpty()) {
+            return;
+        }
+        if (!text.isLoaded()) {
+            count.setText("Reading file...");
+            final LinkedList waiting = text;
+            text.finishLoading(new Runnable() {
+                @Override
+                public void run() {
+                    if (waiting == text) {
+                        replaceAll();
+                    }
+                }
+            });
+            return;
+        }
+        // Another tab may be shown by the time the new text is worked out
+        final LinkedList target = text;
+        final long version = text.version();
+        try {
+            searcher.replaceAll(text.snapshot(), version, query, regexBox.isSelected(), replaceField.getText(),
+                    new Searcher.Replaced() {
+                        @Override
+                        public void replaced(Matches replaced, Rope result) {
+                            if (result == null) {
+                                count.setText("Bad replacement");
+                            } else if (target.version() != version) {
+                                // The text was edited while the new text was being worked out
+                                count.setText("Text changed, try again");
+                            } else {
+                                target.replaceAll(replaced, result);
+                                matches = null;
+                                target.setMatches(null);
+                                count.setText("Replaced " + replaced.size());
+                                changed.run();
+                            }
+                        }
+                    });
+            count.setText("Replacing...");
+        } catch (PatternSyntaxException patternException) {
+            count.setText("Bad pattern");
+        }
+    }
+
+    /** Moves the cursor to the end of the first match after it, going back to the top after the last one. */
+    public void findNext() {
+        if (!usable()) {
+            return;
+        }
+        int index = matches.firstStartingAt(text.cursorOffset());
+        if (index == matches.size()) {
+            index = 0;
+        }
+        moveTo(index);
+    }
+
+    /** Moves the cursor to the end of the last match before it, going round to the bottom before the first one. */
+    public void findPrevious() {
+        if (!usable()) {
+            return;
+        }
+        int index = matches.firstEndingAfter(text.cursorOffset() - 1) - 1;
+        if (index < 0) {
+            index = matches.size() - 1;
+        }
+        moveTo(index);
+    }
+
+    /** Returns true if there are matches for the text as it is now. */
+    private boolean usable() {
+        return matches != null && matches.size() > 0 && matches.version() == text.version();
+    }
+
+    private void moveTo(int index) {
+        text.clearSelection();
+        text.moveCursorTo(matches.end(index));
+        showCount(index);
+        changed.run();
+    }
+
+    /** Shows how many matches there are, and which one the cursor is on if index isn't -1. */
+    private void showCount(int index) {
+        String more = matches.isDone() ? "" : "+";
+        if (index >= 0) {
+            count.setText((index + 1) + " of " + matches.size() + more);
+        } else {
+            count.setText(matches.size() + more + (matches.size() == 1 ? " match" : " matches"));
+        }
+    }
+
+    /** Stops the background thread. */
+    public void shutdown() {
+        searcher.shutdown();
+    }
+
+}
@@ -0,0 +1,157 @@
+package editor;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+public class FontMetricsCache implements WidthSource {
+    /**
+         A FontMetricsCache remembers how wide each character is in one font at one size, and how tall a line is.
+         Measuring a character means putting it in a Text node and asking for its layout bounds, which is slow, so
+         each character is only measured the first time it is asked for. Widths of characters in the Basic
+         Multilingual Plane are kept in pages of 256 doubles; anything above it goes in a HashMap.
+         There is only ever one cache (and one Font instance) per font name and size, shared by everyone who asks,
+         so every tab showing the same font measures each character once. It is forgotten once all of them let go.
+         It is the WidthSource the LayoutEngine measures with in the editor. Measuring needs the JavaFX thread, so
+         layout on other threads uses a Snapshot of the widths measured so far instead.
+    */
+
+    private static final int PAGE_SIZE = 256;
+    private static HashMap<String, FontMetricsCache> caches = new HashMap<String, FontMetricsCache>();
+
+    private final Font font;
+    private final Text measure = new Text();
+    private final int lineHeight;
+    private final double[][] pages = new double[Character.MAX_VALUE / PAGE_SIZE + 1][];
+    private final HashMap<Integer, Double> supplementary = new HashMap<Integer, Double>();
+    private int users;
+
+    private FontMetricsCache(String fontName, int fontSize) {
+        font = Font.font(fontName, fontSize);
+        measure.setFont(font);
+        measure.setText("");
+        lineHeight = Math.max(1, (int) measure.getLayoutBounds().getHeight());
+    }
+
+    /**
+     * Returns the cache for fontName at fontSize, making it if nobody is using it yet. Everyone who gets it has
+     * to release() it again once they switch to another size.
+     */
+    public static FontMetricsCache get(String fontName, int fontSize) {
+        String key = fontName + ":" + fontSize;
+        FontMetricsCache cache = caches.get(key);
+        if (cache == null) {
+            cache = new FontMetricsCache(fontName, fontSize);
+            caches.put(key, cache);
+        }
+        cache.users++;
+        return cache;
+    }
+
+    /** Lets go of the cache for fontName at fontSize, which is forgotten once nobody uses that size any more. */
+    public static void release(String fontName, int fontSize) {
+        String key = fontName + ":" + fontSize;
+        FontMetricsCache cache = caches.get(key);
+        if (cache != null && --cache.users == 0) {
+            caches.remove(key);
+        }
+    }
+
+    /** Returns the shared Font instance. */
+    public Font font() {
+        return font;
+    }
+
+    /** Returns how tall one line is. */
+    public int lineHeight() {
+        return lineHeight;
+    }
+
+    /** Returns how far the next character moves along after codePoint. Newlines take up no space. */
+    @Override
+    public double width(int codePoint) {
+        if (codePoint == '\n') {
+            return 0;
+        }
+        if (codePoint > Character.MAX_VALUE) {
+            Double width = supplementary.get(codePoint);
+            if (width == null) {
+                width = measure(codePoint);
+                supplementary.put(codePoint, width);
+            }
+            return width;
+        }
+        double[] page = pages[codePoint / PAGE_SIZE];
+        if (page == null) {
+            page = new double[PAGE_SIZE];
+            Arrays.fill(page, Double.NaN);
+            pages[codePoint / PAGE_SIZE] = page;
+        }
+        double width = page[codePoint % PAGE_SIZE];
+        if (Double.isNaN(width)) {
+            width = measure(codePoint);
+            page[codePoint % PAGE_SIZE] = width;
+        }
+        return width;
+    }
+
+    /** Returns a copy of the widths measured so far, which can be used from any thread. */
+    public Snapshot snapshot() {
+        double[][] copy = new double[pages.length][];
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null) {
+                copy[i] = pages[i].clone();
+            }
+        }
+        return new Snapshot(copy, new HashMap<Integer, Double>(supplementary));
+    }
+
+    /**
+         A Snapshot is the widths a FontMetricsCache had measured when it was taken. It never measures anything,
+         so a character that wasn't measured yet gets width 0 and the Snapshot remembers that it missed one.
+    */
+    public static class Snapshot implements WidthSource {
+        private final double[][] pages;
+        private final HashMap<Integer, Double> supplementary;
+        private volatile boolean missed;
+
+        private Snapshot(double[][] pages, HashMap<Integer, Double> supplementary) {
+            this.pages = pages;
+            this.supplementary = supplementary;
+        }
+
+        @Override
+        public double width(int codePoint) {
+            if (codePoint == '\n') {
+                return 0;
+            }
+            if (codePoint > Character.MAX_VALUE) {
+                Double width = supplementary.get(codePoint);
+                if (width != null) {
+                    return width;
+                }
+            } else {
+                double[] page = pages[codePoint / PAGE_SIZE];
+                if (page != null && !Double.isNaN(page[codePoint % PAGE_SIZE])) {
+                    return page[codePoint % PAGE_SIZE];
+                }
+            }
+            missed = true;
+            return 0;
+        }
+
+        /** Returns true if a character was asked for that hadn't been measured, so its width was wrong. */
+        public boolean missed() {
+            return missed;
+        }
+    }
+
+    private double measure(int codePoint) {
+        measure.setText(new String(Character.toChars(codePoint)));
+        return measure.getLayoutBounds().getWidth();
+    }
+
+}
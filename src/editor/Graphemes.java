@@ -0,0 +1,90 @@
+package editor;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+public class Graphemes {
+    /**
+         Graphemes finds where the characters a user sees start and end. One of them can take more than one char:
+         a surrogate pair for anything outside the Basic Multilingual Plane, a letter followed by combining
+         accents, an emoji with a skin tone or a family joined with zero width joiners, a flag, or CR LF. Moving
+         the cursor and deleting go over a whole one at a time, so neither ever splits one.
+         The clusters are found with the \X of java.util.regex, which follows the Unicode rules. Only the
+         MAX_CLUSTER chars next to the offset are looked at, so a longer cluster is split, but never between the
+         two halves of a surrogate pair. A plain character with nothing joined to it is its own cluster, which is
+         worked out without the regex.
+         Wrapping lines can't afford the regex for every character, so it asks joins() instead, which knows the
+         code points that carry on the one before them.
+    */
+
+    private static final Pattern CLUSTER = Pattern.compile("\\X");
+    private static final int MAX_CLUSTER = 64;
+    private static final int FIRST_MARK = 0x300; // Nothing below this joins onto the character before it
+    private static final int ZERO_WIDTH_JOINER = 0x200D;
+
+    /**
+     * Returns true if codePoint carries on the character previous: a combining mark, a variation selector, an
+     * emoji skin tone or tag, a zero width joiner or whatever comes after one, or the second half of a flag.
+     */
+    public static boolean joins(int previous, int codePoint) {
+        if (codePoint < FIRST_MARK) {
+            return false;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || codePoint == ZERO_WIDTH_JOINER || previous == ZERO_WIDTH_JOINER
+                || (codePoint >= 0x1F3FB && codePoint <= 0x1F3FF) // Skin tones
+                || (codePoint >= 0xE0020 && codePoint <= 0xE007F) // Tags, as in the flags of Scotland and Wales
+                || (isRegionalIndicator(previous) && isRegionalIndicator(codePoint));
+    }
+
+    private static boolean isRegionalIndicator(int codePoint) {
+        return codePoint >= 0x1F1E6 && codePoint <= 0x1F1FF;
+    }
+
+    /** Returns the offset of the end of the character that starts at offset, or offset at the end of text. */
+    public static int next(CharSequence text, int offset) {
+        int length = text.length();
+        if (offset >= length) {
+            return length;
+        }
+        char c = text.charAt(offset);
+        if (c < FIRST_MARK && c != '\r' && (offset + 1 == length || text.charAt(offset + 1) < FIRST_MARK)) {
+            return offset + 1;
+        }
+        Matcher matcher = CLUSTER.matcher(text);
+        matcher.region(offset, Math.min(length, offset + MAX_CLUSTER));
+        int end = matcher.lookingAt() ? matcher.end() : offset + 1;
+        if (end < length && Character.isLowSurrogate(text.charAt(end))
+                && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end++;
+        }
+        return end;
+    }
+
+    /** Returns the offset of the start of the character that ends at offset, or 0 at the start of text. */
+    public static int previous(CharSequence text, int offset) {
+        if (offset <= 0) {
+            return 0;
+        }
+        char c = text.charAt(offset - 1);
+        if (c < FIRST_MARK && c != '\n') {
+            return offset - 1;
+        }
+        int from = Math.max(0, offset - MAX_CLUSTER);
+        if (from > 0 && Character.isLowSurrogate(text.charAt(from))) {
+            from--;
+        }
+        Matcher matcher = CLUSTER.matcher(text);
+        matcher.region(from, offset);
+        // The last cluster before offset is the one that ends there
+        int start = offset - 1;
+        while (matcher.find()) {
+            start = matcher.start();
+        }
+        return start;
+    }
+
+}
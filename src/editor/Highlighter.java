@@ -0,0 +1,285 @@
+package editor;
+
+import javafx.application.Platform;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class Highlighter {
+    /**
+         A Highlighter keeps the state a Lexer is in at the start of every line of a text, so any line can be
+         lexed on its own. Only the lines in the window are ever split into tokens, when they are drawn.
+         Working out the states is done on a background thread. After an edit, lexing starts again at the first
+         line that changed and stops as soon as it is past the change and comes to a line that starts in the
+         same state as last time: everything after that line is lexed the same as before. Typing a letter
+         usually lexes one line; opening a block comment lexes on until it is closed.
+         Every edit cancels the lexing that is going, which stops as soon as it notices. New states are handed
+         to the JavaFX thread in batches, and the lines that start in a new state are drawn again.
+         The lines are the ones between newlines, not the wrapped lines on the screen. All Highlighters share
+         the one background thread.
+    */
+
+    private static final Metrics.Operation LEX = Metrics.operation("lex");
+    private static final int NONE = Integer.MAX_VALUE;
+    private static final int BATCH_LINES = 4096; // Most states handed to the JavaFX thread at once
+    private static final int CHECK_LINES = 256; // Lines lexed between looks at whether there was an edit
+    private static final int MAX_LINE = 1 << 16; // Longer lines are drawn without tokens
+
+    private static ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "lex");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Listener hears on the JavaFX thread which lines start in a new state, and so have new tokens. */
+    public interface Listener {
+        /** Called when lines [fromLine, toLine) have to be drawn again. */
+        void restyled(int fromLine, int toLine);
+    }
+
+    private Lexer lexer;
+    private Listener listener;
+    private AtomicInteger generation = new AtomicInteger(); // Goes up with every edit and every new run
+    // These are only used on the JavaFX thread
+    private Rope text = Rope.EMPTY;
+    private int[] states = new int[1]; // The state at the start of every line
+    private int dirtyFrom = -1; // The states after line dirtyFrom may be wrong because of an edit, -1 if none
+    private int changedTo; // The last line an edit changed since the states after it were right
+    private int staleFrom = NONE; // The states from this line on were never worked out
+    private int running = -1; // The run that is going, which is only still going if it is the generation
+    private char[] line = new char[256];
+
+    public Highlighter(Lexer lexer, Listener listener) {
+        this.lexer = lexer;
+        this.listener = listener;
+    }
+
+    /** Forgets all the states, for a text that was replaced as a whole. */
+    public void reset(Rope newText) {
+        generation.incrementAndGet();
+        text = newText;
+        states = new int[newText.lineCount()];
+        dirtyFrom = -1;
+        staleFrom = 1;
+    }
+
+    /**
+     * Moves the states along for an edit that turned before into after by replacing removed characters at
+     * offset with added ones, and cancels the lexing that is going.
+     */
+    public void edited(Rope before, Rope after, int offset, int removed, int added) {
+        generation.incrementAndGet();
+        text = after;
+        int first = after.lineOfOffset(offset);
+        int removedLines = before.lineOfOffset(offset + removed) - first;
+        int addedLines = after.lineOfOffset(offset + added) - first;
+        int shift = addedLines - removedLines;
+        int oldCount = before.lineCount();
+        if (states.length < after.lineCount()) {
+            states = Arrays.copyOf(states, Math.max(after.lineCount(), states.length * 2));
+        }
+        // The lines after the edit keep their states until they are lexed again, the new ones get a guess
+        if (shift != 0) {
+            System.arraycopy(states, first + removedLines + 1, states, first + addedLines + 1,
+                    oldCount - first - removedLines - 1);
+        }
+        Arrays.fill(states, first + 1, first + addedLines + 1, states[first]);
+        int last = first + addedLines;
+        if (dirtyFrom < 0) {
+            dirtyFrom = first;
+            changedTo = last;
+        } else {
+            if (changedTo >= first + removedLines) {
+                changedTo += shift;
+            } else if (changedTo > first) {
+                changedTo = last;
+            }
+            dirtyFrom = Math.min(dirtyFrom, first);
+            changedTo = Math.max(changedTo, last);
+        }
+        if (staleFrom != NONE && staleFrom > first) {
+            staleFrom = staleFrom > first + removedLines ? staleFrom + shift : first + 1;
+        }
+    }
+
+    /** Starts lexing the lines whose states may be wrong, unless that is already going. */
+    public void start() {
+        if ((dirtyFrom < 0 && staleFrom == NONE) || running == generation.get()) {
+            return;
+        }
+        running = generation.incrementAndGet();
+        boolean dirty = dirtyFrom >= 0;
+        int from = dirty ? dirtyFrom : staleFrom - 1;
+        executor.execute(new Run(running, text, states, from, states[from], dirty, dirty ? changedTo : -1,
+                staleFrom));
+    }
+
+    /**
+     * Hands every token in [from, to) to tokens, at offsets counting from from. The characters have to be
+     * on one line.
+     */
+    public void tokens(int from, int to, final Lexer.Tokens tokens) {
+        int paragraph = text.lineOfOffset(from);
+        final int start = text.lineStart(paragraph);
+        int end = paragraph + 1 < text.lineCount() ? text.lineStart(paragraph + 1) - 1 : text.length();
+        if (end - start > MAX_LINE) {
+            return;
+        }
+        if (line.length < end - start) {
+            line = new char[Math.max(end - start, line.length * 2)];
+        }
+        text.getChars(start, end, line, 0);
+        // The whole line is lexed, since a token can start before the part that is drawn
+        final int clipFrom = from - start;
+        final int clipTo = to - start;
+        lexer.lex(line, end - start, states[paragraph], new Lexer.Tokens() {
+            @Override
+            public void token(int tokenStart, int tokenEnd, TokenStyle style) {
+                int s = Math.max(tokenStart, clipFrom);
+                int e = Math.min(tokenEnd, clipTo);
+                if (s < e) {
+                    tokens.token(s - clipFrom, e - clipFrom, style);
+                }
+            }
+        });
+    }
+
+    /**
+     * Takes count states worked out for lines from first on by run id, unless there was an edit since. After
+     * them, the states after line dirtyFrom may still be wrong and the ones from staleFrom on were never worked
+     * out. done is true if the run is over.
+     */
+    private void apply(int id, int first, int[] batch, int count, int newDirtyFrom, int newStaleFrom,
+                       boolean done) {
+        if (id != generation.get()) {
+            return;
+        }
+        int changedFrom = -1;
+        int changedEnd = -1;
+        for (int i = 0; i < count; i++) {
+            if (states[first + i] != batch[i]) {
+                states[first + i] = batch[i];
+                if (changedFrom < 0) {
+                    changedFrom = first + i;
+                }
+                changedEnd = first + i + 1;
+            }
+        }
+        dirtyFrom = newDirtyFrom;
+        staleFrom = newStaleFrom;
+        if (done) {
+            running = -1;
+        }
+        if (changedFrom >= 0) {
+            listener.restyled(changedFrom, changedEnd);
+        }
+    }
+
+    /** Run lexes lines on the background thread until their states are the same as before. */
+    private class Run implements Runnable {
+        private int id;
+        private Rope text;
+        private int[] previous; // Only read past the lines this run has handed over
+        private int from;
+        private int startState;
+        private boolean dirty;
+        private int changedTo;
+        private int stale;
+        private char[] chars = new char[256];
+        private int[] batch = new int[BATCH_LINES];
+        private int batchStart;
+        private int count;
+
+        Run(int id, Rope text, int[] previous, int from, int startState, boolean dirty, int changedTo,
+            int stale) {
+            this.id = id;
+            this.text = text;
+            this.previous = previous;
+            this.from = from;
+            this.startState = startState;
+            this.dirty = dirty;
+            this.changedTo = changedTo;
+            this.stale = stale;
+        }
+
+        @Override
+        public void run() {
+            LEX.start();
+            int lineCount = text.lineCount();
+            int line = from;
+            int state = startState;
+            Rope.CharIterator iterator = text.iterator(text.lineStart(line));
+            batchStart = line + 1;
+            while (line + 1 < lineCount) {
+                if (line % CHECK_LINES == 0 && generation.get() != id) {
+                    LEX.stop();
+                    return;
+                }
+                state = lexer.lex(chars, read(iterator), state, null);
+                line++;
+                if (dirty && line >= stale) {
+                    // Lines from here on were never lexed, so there is nothing to compare with
+                    dirty = false;
+                }
+                if (dirty && line > changedTo && state == previous[line]) {
+                    // Every line from here on starts the same as it did before the edit
+                    dirty = false;
+                    flush(-1, stale, stale == NONE);
+                    if (stale == NONE) {
+                        LEX.stop();
+                        return;
+                    }
+                    line = stale - 1;
+                    state = previous[line];
+                    iterator = text.iterator(text.lineStart(line));
+                    batchStart = stale;
+                    continue;
+                }
+                batch[count++] = state;
+                if (count == BATCH_LINES) {
+                    flush(dirty ? line : -1, dirty ? stale : line + 1, false);
+                }
+            }
+            flush(-1, NONE, true);
+            LEX.stop();
+        }
+
+        /** Reads the line iterator is at into chars, leaving out the newline. Returns its length. */
+        private int read(Rope.CharIterator iterator) {
+            int length = 0;
+            while (iterator.hasNext()) {
+                char c = iterator.next();
+                if (c == '\n') {
+                    break;
+                }
+                if (length == chars.length) {
+                    chars = Arrays.copyOf(chars, length * 2);
+                }
+                chars[length++] = c;
+            }
+            return length;
+        }
+
+        /** Hands the states worked out since the last flush to the JavaFX thread. */
+        private void flush(final int newDirtyFrom, final int newStaleFrom, final boolean done) {
+            final int first = batchStart;
+            final int[] states = Arrays.copyOf(batch, count);
+            batchStart += count;
+            count = 0;
+            Platform.runLater(new Runnable() {
+                @Override
+                public void run() {
+                    apply(id, first, states, states.length, newDirtyFrom, newStaleFrom, done);
+                }
+            });
+        }
+    }
+
+}
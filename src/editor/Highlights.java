@@ -0,0 +1,146 @@
+package editor;
+
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayList;
+
+
+public class Highlights {
+    /**
+         Highlights draws what goes over the lines in the window for either Renderer: search matches and
+         selections as Rectangles behind the text, and the cursors besides the main one in front of it.
+         Only the ones inside the window get a Rectangle, and the Rectangles are reused every time the window
+         moves. The selection is drawn on top of the matches.
+    */
+
+    private static final Color HIGHLIGHT_COLOR = Color.rgb(255, 230, 0, 0.5);
+    private static final Color SELECTION_COLOR = Color.rgb(0, 120, 215, 0.3);
+
+    private LinkedList text;
+    private int lineHeight = 1;
+    private Group highlightRoot = new Group();
+    private ArrayList<Rectangle> highlights = new ArrayList<Rectangle>();
+    private Group caretRoot = new Group();
+    private ArrayList<Rectangle> carets = new ArrayList<Rectangle>();
+    private Matches matches;
+
+    public Highlights(Group root, LinkedList text) {
+        this.text = text;
+        // The highlights go behind the text, and the cursors in front of it
+        root.getChildren().add(0, highlightRoot);
+        root.getChildren().add(caretRoot);
+    }
+
+    public void setLineHeight(int lineHeight) {
+        this.lineHeight = lineHeight;
+    }
+
+    public void setMatches(Matches newMatches) {
+        matches = newMatches;
+    }
+
+    /** Throws away every Rectangle. */
+    public void release() {
+        highlightRoot.getChildren().clear();
+        highlights.clear();
+        caretRoot.getChildren().clear();
+        carets.clear();
+    }
+
+    /**
+     * Puts a highlight behind every match and selection on lines [first, last), and draws the cursors besides
+     * the main one that are on them. Matches from an older version of the text are not drawn at all.
+     */
+    public void update(int first, int last) {
+        int used = 0;
+        int caretsUsed = 0;
+        int lineCount = text.lineCount();
+        if (first < lineCount) {
+            last = Math.min(lineCount, last);
+            int windowStart = text.lineStart(first);
+            int windowEnd = last < lineCount ? text.lineStart(last) : text.length();
+            if (matches != null && matches.version() == text.version()) {
+                for (int i = matches.firstEndingAfter(windowStart); i < matches.size(); i++) {
+                    if (matches.start(i) >= windowEnd) {
+                        break;
+                    }
+                    used = highlight(Math.max(matches.start(i), windowStart), Math.min(matches.end(i), windowEnd),
+                            HIGHLIGHT_COLOR, used);
+                }
+            }
+            used = highlight(Math.max(text.selectionStart(), windowStart),
+                    Math.min(text.selectionEnd(), windowEnd), SELECTION_COLOR, used);
+            Cursors cursors = text.cursors();
+            for (int i = cursors.firstAtOrAfter(windowStart); i < cursors.size(); i++) {
+                int offset = cursors.offset(i);
+                if (offset > windowEnd) {
+                    break;
+                }
+                int anchor = cursors.anchor(i);
+                if (anchor >= 0) {
+                    used = highlight(Math.max(Math.min(offset, anchor), windowStart),
+                            Math.min(Math.max(offset, anchor), windowEnd), SELECTION_COLOR, used);
+                }
+                int line = text.lineOf(offset);
+                Rectangle caret = caretAt(caretsUsed++);
+                caret.setX((int) text.xOf(offset, line));
+                caret.setY(line * lineHeight);
+                caret.setHeight(lineHeight);
+                caret.setVisible(true);
+            }
+        }
+        for (int i = used; i < highlights.size(); i++) {
+            highlights.get(i).setVisible(false);
+        }
+        for (int i = caretsUsed; i < carets.size(); i++) {
+            carets.get(i).setVisible(false);
+        }
+    }
+
+    /** Returns the index-th cursor Rectangle, making it if there aren't that many yet. */
+    private Rectangle caretAt(int index) {
+        if (index == carets.size()) {
+            Rectangle caret = new Rectangle(1, lineHeight);
+            caretRoot.getChildren().add(caret);
+            carets.add(caret);
+        }
+        return carets.get(index);
+    }
+
+    /**
+     * Highlights the characters in [start, end) in color, with one Rectangle per line, starting at Rectangle
+     * number used. Returns the number of Rectangles used after that.
+     */
+    private int highlight(int start, int end, Color color, int used) {
+        int lineCount = text.lineCount();
+        int line = text.lineOf(start);
+        while (start < end) {
+            int lineEnd = line + 1 < lineCount ? text.lineStart(line + 1) : text.length();
+            int to = Math.min(end, lineEnd);
+            double x = text.xOf(start, line);
+            Rectangle highlight = highlightAt(used++);
+            highlight.setFill(color);
+            highlight.setX(x);
+            highlight.setY(line * lineHeight);
+            highlight.setWidth(Math.max(1, text.xOf(to, line) - x));
+            highlight.setHeight(lineHeight);
+            highlight.setVisible(true);
+            start = to;
+            line++;
+        }
+        return used;
+    }
+
+    /** Returns the index-th highlight Rectangle, making it if there aren't that many yet. */
+    private Rectangle highlightAt(int index) {
+        if (index == highlights.size()) {
+            Rectangle highlight = new Rectangle();
+            highlightRoot.getChildren().add(highlight);
+            highlights.add(highlight);
+        }
+        return highlights.get(index);
+    }
+
+}
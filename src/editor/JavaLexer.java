@@ -0,0 +1,109 @@
+package editor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+
+public class JavaLexer implements Lexer {
+    /**
+         JavaLexer finds the keywords, literals, strings, characters, numbers, comments and annotations of Java.
+         A line can start inside a block comment or a text block, which is what its state says.
+    */
+
+    private static final int CODE = 0;
+    private static final int BLOCK_COMMENT = 1;
+    private static final int TEXT_BLOCK = 2;
+    private static final HashSet<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for",
+            "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new",
+            "package", "private", "protected", "public", "record", "return", "sealed", "short", "static",
+            "strictfp", "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "var",
+            "void", "volatile", "while", "yield"));
+    private static final HashSet<String> LITERALS = new HashSet<String>(Arrays.asList("true", "false", "null"));
+
+    @Override
+    public int lex(char[] line, int length, int state, Tokens tokens) {
+        int i = 0;
+        if (state == BLOCK_COMMENT || state == TEXT_BLOCK) {
+            i = closing(line, length, 0, 0, state, tokens);
+            if (i < 0) {
+                return state;
+            }
+        }
+        while (i < length) {
+            char c = line[i];
+            char next = i + 1 < length ? line[i + 1] : 0;
+            if (c == '/' && next == '/') {
+                emit(tokens, i, length, TokenStyle.COMMENT);
+                return CODE;
+            } else if (c == '/' && next == '*') {
+                i = closing(line, length, i, 2, BLOCK_COMMENT, tokens);
+                if (i < 0) {
+                    return BLOCK_COMMENT;
+                }
+            } else if (Lexers.startsWith(line, length, i, "\"\"\"")) {
+                i = closing(line, length, i, 3, TEXT_BLOCK, tokens);
+                if (i < 0) {
+                    return TEXT_BLOCK;
+                }
+            } else if (c == '"' || c == '\'') {
+                int end = Lexers.quotedEnd(line, length, i);
+                emit(tokens, i, end, TokenStyle.STRING);
+                i = end;
+            } else if (c == '@' && Character.isJavaIdentifierStart(next)) {
+                int end = Lexers.wordEnd(line, length, i + 1);
+                emit(tokens, i, end, TokenStyle.ANNOTATION);
+                i = end;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = Lexers.wordEnd(line, length, i);
+                if (tokens != null) {
+                    // Only the tokens need the word itself, working out the state doesn't
+                    String word = new String(line, i, end - i);
+                    if (KEYWORDS.contains(word)) {
+                        tokens.token(i, end, TokenStyle.KEYWORD);
+                    } else if (LITERALS.contains(word)) {
+                        tokens.token(i, end, TokenStyle.LITERAL);
+                    }
+                }
+                i = end;
+            } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+                int end = Lexers.numberEnd(line, length, i);
+                emit(tokens, i, end, TokenStyle.NUMBER);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return CODE;
+    }
+
+    /**
+     * Finds the end of the block comment or text block (which state says) that goes on from line[from], after
+     * an opening /* or """ that is opening characters long, and makes a token of it. Returns the offset after
+     * its end, or -1 if it goes on past this line.
+     */
+    private static int closing(char[] line, int length, int from, int opening, int state, Tokens tokens) {
+        TokenStyle style = state == BLOCK_COMMENT ? TokenStyle.COMMENT : TokenStyle.STRING;
+        for (int i = from + opening; i < length; i++) {
+            if (state == TEXT_BLOCK && line[i] == '\\') {
+                i++;
+            } else if (state == BLOCK_COMMENT && Lexers.startsWith(line, length, i, "*/")) {
+                emit(tokens, from, i + 2, style);
+                return i + 2;
+            } else if (state == TEXT_BLOCK && Lexers.startsWith(line, length, i, "\"\"\"")) {
+                emit(tokens, from, i + 3, style);
+                return i + 3;
+            }
+        }
+        emit(tokens, from, length, style);
+        return -1;
+    }
+
+    private static void emit(Tokens tokens, int start, int end, TokenStyle style) {
+        if (tokens != null && start < end) {
+            tokens.token(start, end, style);
+        }
+    }
+
+}
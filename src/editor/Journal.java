@@ -0,0 +1,526 @@
+package editor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+
+public class Journal {
+    /**
+         A Journal writes down every edit of a text as it happens, so the edits since the last save survive the
+         editor dying. It is a binary file next to the real one, .name.journal, that is only ever added to.
+         Each record is the offset of an edit, how many characters it removed, the characters it inserted and a
+         CRC32 of all that. Records go into a buffer on the JavaFX thread, and a background thread writes the
+         buffer out and forces it onto the disk. While it waits for one force, the next keys pile up in the
+         buffer and go out together with the next one, so a burst of typing shares a few forces (group commit).
+         The header says which version of the file the edits go on top of: its size and when it was last
+         modified. Opening the file again replays the edits onto it if it is still that version, and compacts
+         the journal into one record. A record that is cut short or doesn't match its CRC, which is what the last
+         one looks like if the editor died while writing it, ends the replay.
+         Once a save is on disk, the records up to it are dropped and the header points at the new file.
+         That happens after the new file was renamed into place, so a save also leaves two records of its own on
+         the way: a save mark where its snapshot was taken, with the length of the snapshot, and before the
+         rename, a checksum of the snapshot. If the header doesn't match the file when it is opened again, the
+         edits after the last save mark whose snapshot is the file on disk are replayed instead. Only if neither
+         matches is the journal started again.
+         All Journals share the one background thread. A Journal with no edits left in it is deleted when the
+         editor closes.
+    */
+
+    private static final int MAGIC = 0x45444A31; // "EDJ1"
+    private static final int HEADER_SIZE = 4 + 8 + 8;
+    private static final int RECORD_SIZE = 4 + 4 + 4 + 4; // Without the inserted characters
+    // A record whose offset is one of these is about a save instead: the number of the save, a value, and a CRC32
+    private static final int SAVE_MARK = -1; // The value is the length of the text that is being saved
+    private static final int SAVE_CHECKSUM = -2; // The value is the checksum() of that text
+    private static final int CHUNK = 1 << 16; // Most characters copied out of a Rope at a time
+    private static final int MAX_KEPT = 1 << 20; // Bigger buffers are thrown away once they are written
+    private static final Metrics.Operation REPLAY = Metrics.operation("replay");
+    private static final Metrics.Operation COMMIT = Metrics.operation("commit");
+
+    private static ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "journal");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static ArrayList<Journal> journals = new ArrayList<Journal>();
+
+    private Path journalFile;
+    private Rope recovered;
+    // These are only used on the background thread
+    private FileChannel channel;
+    private long base; // The position, counting every byte ever added, of the first record in the file
+    private long written; // The position of the end of what is in the file
+    private ByteBuffer writing = ByteBuffer.allocate(4096);
+    // These are guarded by the Journal
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private long appended; // The position after the last record added
+    private boolean committing; // A commit is queued or going, and will pick up anything added to pending
+    private CRC32 crc = new CRC32();
+    private int saves; // Save marks added so far
+
+    private Journal(Path journalFile, FileChannel channel, long length, Rope recovered) {
+        this.journalFile = journalFile;
+        this.channel = channel;
+        this.recovered = recovered;
+        base = HEADER_SIZE;
+        written = length;
+        appended = length;
+    }
+
+    /** Returns the journal file that goes with file: .name.journal in the same directory. */
+    public static Path journalFile(Path file) {
+        return file.resolveSibling("." + file.getFileName() + ".journal");
+    }
+
+    /**
+     * Opens the journal of file, whose text is base. If the journal goes on top of the file as it is now, its
+     * edits are replayed and it is compacted, otherwise it is started again.
+     */
+    public static Journal open(Path file, Rope base) throws IOException {
+        Path journalFile = journalFile(file.toAbsolutePath());
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Rope recovered = base;
+        if (Files.exists(journalFile)) {
+            recovered = replay(journalFile, base, size, modified);
+        }
+        // The compacted journal is one record from base to recovered, written next to the old one and then
+        // renamed over it, so the edits are on disk the whole time
+        ByteBuffer compacted = header(size, modified);
+        if (recovered != base) {
+            int prefix = base.commonPrefix(recovered);
+            int suffix = base.commonSuffix(recovered, Math.min(base.length(), recovered.length()) - prefix);
+            compacted = put(compacted, prefix, base.length() - prefix - suffix,
+                    recovered.subSequence(prefix, recovered.length() - suffix), new CRC32());
+        }
+        compacted.flip();
+        Path temp = Files.createTempFile(journalFile.getParent(), journalFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (compacted.hasRemaining()) {
+                    out.write(compacted);
+                }
+                out.force(true);
+            }
+            try {
+                Files.move(temp, journalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException atomicMoveException) {
+                Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+        channel.position(length);
+        Journal journal = new Journal(journalFile, channel, length, recovered);
+        synchronized (journals) {
+            journals.add(journal);
+        }
+        return journal;
+    }
+
+    /** Returns the text with the edits in the journal replayed, which is base if there were none. */
+    public Rope recovered() {
+        return recovered;
+    }
+
+    /**
+     * Returns the edits in journalFile replayed onto base, or base if the journal goes on top of another
+     * version of the file than the one of size bytes modified at modified.
+     */
+    private static Rope replay(Path journalFile, Rope base, long size, long modified) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            System.out.println("Error reading " + journalFile + ", it is not a journal.");
+            return base;
+        }
+        boolean current = in.getLong() == size;
+        current = in.getLong() == modified && current;
+        REPLAY.start();
+        // The records are checked first, and the save marks and checksums of the saves are picked out
+        int from = current ? in.position() : -1; // Where the edits that go on top of the file start
+        ArrayList<int[]> marks = new ArrayList<int[]>(); // The number, length and end of every save mark
+        HashMap<Integer, Integer> checksums = new HashMap<Integer, Integer>();
+        CRC32 check = new CRC32();
+        int end = in.position();
+        for (int next = recordEnd(in, end, check); next >= 0; next = recordEnd(in, end, check)) {
+            int kind = in.getInt(end);
+            if (kind == SAVE_MARK) {
+                marks.add(new int[] {in.getInt(end + 4), in.getInt(end + 8), next});
+            } else if (kind == SAVE_CHECKSUM) {
+                checksums.put(in.getInt(end + 4), in.getInt(end + 8));
+            }
+            end = next;
+        }
+        if (!current) {
+            // The file may be a save whose rename made it to the disk before the journal was rebased onto it
+            Integer checksum = null;
+            for (int i = marks.size() - 1; i >= 0 && from < 0; i--) {
+                int[] mark = marks.get(i);
+                if (mark[1] == base.length() && checksums.containsKey(mark[0])) {
+                    if (checksum == null) {
+                        checksum = checksum(base);
+                    }
+                    if (checksum.intValue() == checksums.get(mark[0]).intValue()) {
+                        from = mark[2];
+                    }
+                }
+            }
+        }
+        if (from < 0) {
+            REPLAY.stop();
+            System.out.println("Error replaying " + journalFile + ", the file was changed since.");
+            return base;
+        }
+        Rope text = base;
+        char[] inserted = new char[256];
+        in.position(from);
+        while (in.position() < end) {
+            int offset = in.getInt();
+            int removed = in.getInt();
+            int count = in.getInt();
+            if (offset < 0) {
+                // A save mark or a checksum, which only has its CRC32 left
+                in.position(in.position() + 4);
+                continue;
+            }
+            if ((long) offset + removed > text.length()) {
+                break;
+            }
+            if (inserted.length < count) {
+                inserted = new char[Math.max(count, inserted.length * 2)];
+            }
+            in.asCharBuffer().get(inserted, 0, count);
+            in.position(in.position() + 2 * count + 4);
+            if (removed > 0) {
+                text = text.delete(offset, offset + removed);
+            }
+            if (count > 0) {
+                text = text.insert(offset, new String(inserted, 0, count));
+            }
+        }
+        REPLAY.stop();
+        return text;
+    }
+
+    /**
+     * Returns where the record that starts at start in in ends, or -1 if there is no whole record there that
+     * matches its CRC32, which is what the last one looks like if the editor died while writing it.
+     */
+    private static int recordEnd(ByteBuffer in, int start, CRC32 check) {
+        if (in.limit() - start < RECORD_SIZE) {
+            return -1;
+        }
+        int offset = in.getInt(start);
+        int removed = in.getInt(start + 4);
+        int count = in.getInt(start + 8);
+        int length;
+        if (offset == SAVE_MARK || offset == SAVE_CHECKSUM) {
+            length = 12;
+        } else if (offset < 0 || removed < 0 || count < 0 || in.limit() - start - RECORD_SIZE < 2L * count) {
+            return -1;
+        } else {
+            length = 12 + 2 * count;
+        }
+        check.reset();
+        check.update(in.array(), start, length);
+        return in.getInt(start + length) == (int) check.getValue() ? start + length + 4 : -1;
+    }
+
+    /** Returns a CRC32 of the characters of text, which is what a save checksum holds. */
+    private static int checksum(Rope text) {
+        CRC32 check = new CRC32();
+        ByteBuffer bytes = ByteBuffer.allocate(2 * CHUNK);
+        for (CharBuffer chunk : text.chunks()) {
+            while (chunk.hasRemaining()) {
+                int count = Math.min(chunk.remaining(), CHUNK);
+                CharBuffer part = chunk.duplicate();
+                part.limit(part.position() + count);
+                bytes.clear();
+                bytes.asCharBuffer().put(part);
+                bytes.limit(2 * count);
+                check.update(bytes);
+                chunk.position(chunk.position() + count);
+            }
+        }
+        return (int) check.getValue();
+    }
+
+    private static ByteBuffer header(long size, long modified) {
+        ByteBuffer header = ByteBuffer.allocate(4096);
+        header.putInt(MAGIC);
+        header.putLong(size);
+        header.putLong(modified);
+        return header;
+    }
+
+    /** Writes down that removed characters at offset were replaced by inserted. */
+    public void record(int offset, int removed, CharSequence inserted) {
+        record(new int[] {offset}, new int[] {removed}, new CharSequence[] {inserted}, 1);
+    }
+
+    /**
+     * Writes down count edits made one after the other, each a record of its own: removed[i] characters at
+     * offsets[i] were replaced by inserted[i].
+     */
+    public synchronized void record(int[] offsets, int[] removed, CharSequence[] inserted, int count) {
+        int before = pending.position();
+        for (int i = 0; i < count; i++) {
+            pending = put(pending, offsets[i], removed[i], inserted[i], crc);
+        }
+        added(before);
+    }
+
+    /**
+     * Writes down that a save of the text as it is now, which is length characters long, is starting. Returns
+     * the number of the save, which saving() needs.
+     */
+    public synchronized int startSave(int length) {
+        int before = pending.position();
+        pending = putSave(pending, SAVE_MARK, ++saves, length, crc);
+        added(before);
+        return saves;
+    }
+
+    /**
+     * Writes down the checksum of text, which save number save is about to rename into place, and waits until
+     * it is on the disk. Called on the thread that saves, before the rename.
+     */
+    public void saving(int save, Rope text) {
+        int checksum = checksum(text);
+        synchronized (this) {
+            int before = pending.position();
+            pending = putSave(pending, SAVE_CHECKSUM, save, checksum, crc);
+            added(before);
+        }
+        // Runs once the commit that writes out the checksum is done
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Nothing to do, the commit before it did it
+                }
+            }).get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException executionException) {
+            System.out.println("Error writing " + journalFile + ".");
+        }
+    }
+
+    /** Counts what was added to pending since it ended at before, and makes sure a commit is coming for it. */
+    private void added(int before) {
+        appended += pending.position() - before;
+        if (!committing) {
+            committing = true;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    commit();
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds the record for removed characters at offset replaced by inserted to out, checked with crc. Returns
+     * out, or a bigger copy of it if it was too small.
+     */
+    private static ByteBuffer put(ByteBuffer out, int offset, int removed, CharSequence inserted, CRC32 crc) {
+        int count = inserted.length();
+        out = room(out, RECORD_SIZE + 2L * count);
+        int start = out.position();
+        out.putInt(offset);
+        out.putInt(removed);
+        out.putInt(count);
+        char[] chars = new char[Math.min(count, CHUNK)];
+        for (int from = 0; from < count; from += CHUNK) {
+            int to = Math.min(count, from + CHUNK);
+            if (inserted instanceof Rope) {
+                ((Rope) inserted).getChars(from, to, chars, 0);
+            } else {
+                inserted.toString().getChars(from, to, chars, 0);
+            }
+            out.asCharBuffer().put(chars, 0, to - from);
+            out.position(out.position() + 2 * (to - from));
+        }
+        crc.reset();
+        crc.update(out.array(), start, out.position() - start);
+        out.putInt((int) crc.getValue());
+        return out;
+    }
+
+    /** Adds a record of kind SAVE_MARK or SAVE_CHECKSUM about save number save to out, like put(). */
+    private static ByteBuffer putSave(ByteBuffer out, int kind, int save, int value, CRC32 crc) {
+        out = room(out, RECORD_SIZE);
+        int start = out.position();
+        out.putInt(kind);
+        out.putInt(save);
+        out.putInt(value);
+        crc.reset();
+        crc.update(out.array(), start, out.position() - start);
+        out.putInt((int) crc.getValue());
+        return out;
+    }
+
+    /** Returns out, or a bigger copy of it if it doesn't have room for size more bytes. */
+    private static ByteBuffer room(ByteBuffer out, long size) {
+        if (out.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate((int) Math.max(out.position() + size, 2L * out.capacity()));
+            out.flip();
+            grown.put(out);
+            out = grown;
+        }
+        return out;
+    }
+
+    /** Writes out and forces every record added so far, and the ones added while that is going. */
+    private void commit() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (pending.position() == 0) {
+                        committing = false;
+                        return;
+                    }
+                    // The JavaFX thread goes on adding to the other buffer while this one is written
+                    ByteBuffer full = pending;
+                    pending = writing;
+                    writing = full;
+                }
+                COMMIT.start();
+                writing.flip();
+                written += writing.remaining();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                channel.force(false);
+                writing.clear();
+                if (writing.capacity() > MAX_KEPT) {
+                    // A big paste needed a big buffer, but the next keys won't
+                    writing = ByteBuffer.allocate(4096);
+                }
+                COMMIT.stop();
+            }
+        } catch (IOException ioException) {
+            System.out.println("Error writing " + journalFile + ".");
+            synchronized (this) {
+                pending.clear();
+                committing = false;
+            }
+        }
+    }
+
+    /** Returns where the journal is now, which is what saved() needs once a save of the text as it is now is done. */
+    public synchronized long mark() {
+        return appended;
+    }
+
+    /**
+     * Drops the records up to mark, which a save of size bytes modified at modified has on disk, and makes the
+     * journal go on top of the new file.
+     */
+    public void saved(final long mark, final long size, final long modified) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebase(mark, size, modified);
+                } catch (IOException ioException) {
+                    System.out.println("Error writing " + journalFile + ".");
+                }
+            }
+        });
+    }
+
+    /** Does the work of saved() on the background thread. */
+    private void rebase(long mark, long size, long modified) throws IOException {
+        commit();
+        if (mark < base) {
+            return;
+        }
+        // The records after mark are copied after a new header into a new journal, which is renamed over this one
+        ByteBuffer rest = ByteBuffer.allocate((int) (written - mark));
+        long from = HEADER_SIZE + mark - base;
+        while (rest.hasRemaining()) {
+            if (channel.read(rest, from + rest.position()) < 0) {
+                break;
+            }
+        }
+        rest.flip();
+        ByteBuffer header = header(size, modified);
+        header.flip();
+        Path temp = Files.createTempFile(journalFile.getParent(), journalFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                while (rest.hasRemaining()) {
+                    out.write(rest);
+                }
+                out.force(true);
+            }
+            try {
+                Files.move(temp, journalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException atomicMoveException) {
+                Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        channel.close();
+        channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        base = mark;
+    }
+
+    /** Writes out every record, then closes every journal and deletes the ones that have no edits left. */
+    public static void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (journals) {
+            for (Journal journal : journals) {
+                journal.close();
+            }
+            journals.clear();
+        }
+    }
+
+    private void close() {
+        try {
+            channel.close();
+            synchronized (this) {
+                if (appended == base && pending.position() == 0) {
+                    Files.deleteIfExists(journalFile);
+                }
+            }
+        } catch (IOException ioException) {
+            System.out.println("Error closing " + journalFile + ".");
+        }
+    }
+
+}
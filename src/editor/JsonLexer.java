@@ -0,0 +1,46 @@
+package editor;
+
+
+public class JsonLexer implements Lexer {
+    /**
+         JsonLexer finds the keys, strings, numbers and literals of JSON. A string followed by a colon is a key.
+         Nothing in JSON goes on past the end of a line, so the state is always 0.
+    */
+
+    @Override
+    public int lex(char[] line, int length, int state, Tokens tokens) {
+        if (tokens == null) {
+            return 0;
+        }
+        int i = 0;
+        while (i < length) {
+            char c = line[i];
+            if (c == '"') {
+                int end = Lexers.quotedEnd(line, length, i);
+                int after = end;
+                while (after < length && Character.isWhitespace(line[after])) {
+                    after++;
+                }
+                boolean key = after < length && line[after] == ':';
+                tokens.token(i, end, key ? TokenStyle.KEY : TokenStyle.STRING);
+                i = end;
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(line[i + 1]))) {
+                int end = Lexers.numberEnd(line, length, i);
+                tokens.token(i, end, TokenStyle.NUMBER);
+                i = end;
+            } else if (Character.isLetter(c)) {
+                int end = Lexers.wordEnd(line, length, i);
+                if (Lexers.startsWith(line, end, i, "true") && end - i == 4
+                        || Lexers.startsWith(line, end, i, "null") && end - i == 4
+                        || Lexers.startsWith(line, end, i, "false") && end - i == 5) {
+                    tokens.token(i, end, TokenStyle.LITERAL);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,91 @@
+package editor;
+
+import java.util.Arrays;
+
+
+public class LatencyHistogram {
+    /**
+         A LatencyHistogram counts how long something took, in nanoseconds, without keeping every value.
+         Like an HDR histogram, every power of two is split into SUB_BUCKETS buckets of the same width. A
+         percentile read from it is never more than 1 / SUB_BUCKETS (about 3%) too high, anywhere from a few
+         nanoseconds up to years, and recording a value is a couple of shifts and an increment. The memory it
+         takes never grows.
+    */
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /** Counts one value. Negative values count as 0. */
+    public synchronized void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /** Returns the bucket value goes in. Values below SUB_BUCKETS each get their own bucket. */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /** Returns the largest value that goes in bucket. */
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    /** Returns the average value, or 0 if nothing was recorded. */
+    public synchronized double mean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Returns the value that percent of the values are at or below, for percent from 0 to 100. It is rounded up
+     * to the end of its bucket, but never past the largest value recorded.
+     */
+    public synchronized long percentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(count * percent / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                return Math.min(max, highestIn(i));
+            }
+        }
+        return max;
+    }
+
+    /** Forgets every value. */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+}
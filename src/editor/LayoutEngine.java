@@ -0,0 +1,266 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+public class LayoutEngine {
+    /**
+         The LayoutEngine works out where the lines of a text wrap. All it needs is the characters, a WidthSource
+         and the width of the window, and what it hands back is a LineIndex, which never changes. It has nothing
+         to do with JavaFX, so it can run without a window, and on any thread as long as its WidthSource can.
+         The LinkedList keeps the LineIndex and its Renderer draws what is in it.
+         The characters are measured a code point at a time, so a surrogate pair is measured as the one character
+         it stands for. A line never wraps inside a character Graphemes says is one, and a click always lands
+         between two of them.
+         A line is as many words as fit between the margins. A newline always ends a line, and a word that is
+         longer than a whole line is split where it runs out of room.
+         Since a newline always starts a new line, the text between two newlines wraps the same whatever comes
+         before it. layoutParallel uses that to cut a big text into pieces at newlines and lay them all out at
+         once on the common ForkJoinPool.
+    */
+
+    public static final int MARGIN = 5;
+    private static final int MIN_PIECE = 1 << 16; // Texts shorter than this aren't worth cutting up
+
+    private final WidthSource widths;
+    private final int windowWidth;
+
+    /** Makes a LayoutEngine for a window that is windowWidth wide. */
+    public LayoutEngine(WidthSource widths, int windowWidth) {
+        this.widths = widths;
+        this.windowWidth = windowWidth;
+    }
+
+    public int windowWidth() {
+        return windowWidth;
+    }
+
+    /**
+         A Reflow is what laying out part of the text again did: lines [first, first + removed) of the old
+         LineIndex are now lines [first, first + added) of the new one, and every other line stayed the same.
+    */
+    public static final class Reflow {
+        private final LineIndex lines;
+        private final int first;
+        private final int removed;
+        private final int added;
+
+        Reflow(LineIndex lines, int first, int removed, int added) {
+            this.lines = lines;
+            this.first = first;
+            this.removed = removed;
+            this.added = added;
+        }
+
+        public LineIndex lines() {
+            return lines;
+        }
+
+        public int first() {
+            return first;
+        }
+
+        public int removed() {
+            return removed;
+        }
+
+        public int added() {
+            return added;
+        }
+    }
+
+    /** Lays out all of text. */
+    public LineIndex layout(Rope text) {
+        return reflow(text, LineIndex.single(text.length()), 0, text.length() + 1).lines();
+    }
+
+    /**
+     * Lays out all of text like layout(), but in pieces on every core. The WidthSource has to be safe to use
+     * from other threads.
+     */
+    public LineIndex layoutParallel(Rope text) {
+        int length = text.length();
+        int pieces = Math.min(length / MIN_PIECE, ForkJoinPool.getCommonPoolParallelism() * 4);
+        List<Piece> tasks = new ArrayList<Piece>();
+        int from = 0;
+        for (int i = 1; i < pieces && from < length; i++) {
+            int to = nextLineStart(text, Math.max(from, (int) ((long) length * i / pieces)));
+            if (to >= length) {
+                break;
+            }
+            if (to > from) {
+                tasks.add(new Piece(text, from, to));
+                from = to;
+            }
+        }
+        tasks.add(new Piece(text, from, length));
+        ForkJoinPool.commonPool().invoke(new Pieces(tasks));
+        // Every piece but the last ends with a newline, so it has an empty last line where the next piece starts
+        int count = 1;
+        for (Piece piece : tasks) {
+            count += piece.lines.lineCount() - 1;
+        }
+        int[] starts = new int[count];
+        int line = 0;
+        for (Piece piece : tasks) {
+            for (int i = 0; i < piece.lines.lineCount() - 1; i++) {
+                starts[line++] = piece.from + piece.lines.start(i);
+            }
+        }
+        Piece last = tasks.get(tasks.size() - 1);
+        starts[line] = last.from + last.lines.start(last.lines.lineCount() - 1);
+        return LineIndex.single(length).replace(0, 1, starts, count);
+    }
+
+    /** Returns the offset after the first newline at or after offset, or the length of text if there is none. */
+    private static int nextLineStart(Rope text, int offset) {
+        Rope.CharIterator chars = text.iterator(offset);
+        while (chars.offset() < text.length()) {
+            if (chars.next() == '\n') {
+                return chars.offset();
+            }
+        }
+        return text.length();
+    }
+
+    /** Piece lays out the characters in [from, to) of a text on their own. from has to start a line. */
+    private class Piece extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Rope text;
+        private int from;
+        private int to;
+        LineIndex lines;
+
+        Piece(Rope text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            lines = layout(text.subSequence(from, to));
+        }
+    }
+
+    /** Pieces lays out all of its pieces at the same time and waits for them. */
+    private static class Pieces extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private List<Piece> pieces;
+
+        Pieces(List<Piece> pieces) {
+            this.pieces = pieces;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(pieces);
+        }
+    }
+
+    /**
+     * Lays out only what an edit could have changed, where lines is the layout from before the edit with its
+     * line starts moved along for the edit. The text in [from, to) is new (to == from for a delete). Starts at
+     * the line above the edit, because a shorter word may now fit at the end of it.
+     */
+    public Reflow relayout(Rope text, LineIndex lines, int from, int to) {
+        int first = lines.lineOf(from);
+        if (first > 0 && text.charAt(lines.start(first) - 1) != '\n') {
+            first--;
+        }
+        return reflow(text, lines, first, to);
+    }
+
+    /**
+     * Works out the line breaks again starting at line first. Once a new line starts after dirtyEnd in the same
+     * place as an old line, everything below is laid out the same as before, so we stop there.
+     */
+    public Reflow reflow(Rope text, LineIndex lines, int first, int dirtyEnd) {
+        int length = text.length();
+        int start = lines.start(first);
+        int[] newLines = new int[16];
+        int count = 0;
+        newLines[count++] = start;
+        int old = lines.lineCount(); // The old line the new lines caught up with, if they do
+        double x = MARGIN;
+        int wordStart = start;
+        int prev = start > 0 ? Character.codePointBefore(text, start) : 0;
+        Rope.CharIterator chars = text.iterator(start);
+        // Offset length stands for the end of the text, which takes up no space but still gets a position
+        for (int i = start; i <= length; i += i < length ? Character.charCount(prev) : 1) {
+            int c = i < length ? chars.nextCodePoint() : 0;
+            double width = i < length ? widths.width(c) : 0;
+            if (i == 0 || prev == '\n' || prev == ' ') {
+                wordStart = i;
+            }
+            boolean full = x + width > (windowWidth - MARGIN) && c != ' ' && !Graphemes.joins(prev, c);
+            if (i > newLines[count - 1] && (full || prev == '\n')) {
+                // If the new text goes over the page width and it is not a space, move onto next line
+                // If the prev text is a newline character, move onto next line
+                // If the word started on the line we just left the whole word moves down, otherwise the word
+                // is longer than a line and gets split here
+                int lineStart = wordStart > newLines[count - 1] ? wordStart : i;
+                if (lineStart > dirtyEnd) {
+                    int line = lines.lineOf(lineStart);
+                    if (line > first && lines.start(line) == lineStart) {
+                        old = line;
+                        break;
+                    }
+                }
+                if (count == newLines.length) {
+                    newLines = Arrays.copyOf(newLines, count * 2);
+                }
+                newLines[count++] = lineStart;
+                x = MARGIN;
+                for (int j = lineStart; j < i; j += Character.charCount(Character.codePointAt(text, j))) {
+                    x += widths.width(Character.codePointAt(text, j));
+                }
+            }
+            x += width;
+            prev = c;
+        }
+        return new Reflow(lines.replace(first, old, newLines, count), first, old - first, count);
+    }
+
+    /** Returns the x position of offset, which has to be on line. */
+    public double xOf(Rope text, LineIndex lines, int offset, int line) {
+        double x = MARGIN;
+        Rope.CharIterator chars = text.iterator(lines.start(line));
+        while (chars.offset() < offset) {
+            x += widths.width(chars.nextCodePoint());
+        }
+        return x;
+    }
+
+    /** Returns the offset on line that is closest to x position x. It is never inside a character. */
+    public int closest(Rope text, LineIndex lines, int line, double x) {
+        int curr = lines.start(line);
+        int last = line < lines.lineCount() - 1 ? lines.start(line + 1) - 1 : text.length();
+        double currX = MARGIN;
+        Rope.CharIterator chars = text.iterator(curr);
+        while (curr < last) {
+            int next = Graphemes.next(text, curr);
+            if (next > last) {
+                break;
+            }
+            double nextX = currX;
+            while (chars.offset() < next) {
+                nextX += widths.width(chars.nextCodePoint());
+            }
+            if (Math.abs(x - nextX) <= Math.abs(x - currX)) {
+                currX = nextX;
+                curr = next;
+            } else {
+                break;
+            }
+        }
+        return curr;
+    }
+
+}
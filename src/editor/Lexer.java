@@ -0,0 +1,23 @@
+package editor;
+
+
+public interface Lexer {
+    /**
+         A Lexer splits a text into tokens for syntax highlighting, one line at a time. Whatever it has to
+         remember from one line to the next, like being inside a block comment, goes in an int state, so any
+         line can be lexed again on its own once the state at its start is known. Every text starts in state 0,
+         and two states have to be equal whenever the lexer would carry on the same way from them.
+    */
+
+    /** Tokens hears about every token that gets a style. Characters that aren't in a token are drawn plain. */
+    interface Tokens {
+        void token(int start, int end, TokenStyle style);
+    }
+
+    /**
+     * Lexes the first length characters of line, which don't include the newline, starting in state. Tells
+     * tokens about each token unless tokens is null, and returns the state at the start of the next line.
+     */
+    int lex(char[] line, int length, int state, Tokens tokens);
+
+}
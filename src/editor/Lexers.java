@@ -0,0 +1,90 @@
+package editor;
+
+import java.util.Locale;
+
+
+public final class Lexers {
+    /**
+         Lexers picks the Lexer for a file from the end of its name, and has the scanning that the lexers share:
+         finding where a quoted string, a word or a number ends.
+    */
+
+    private Lexers() {
+    }
+
+    /** Returns the Lexer for files called fileName, or null if there isn't one for that kind of file. */
+    public static Lexer forFile(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".java")) {
+            return new JavaLexer();
+        } else if (name.endsWith(".json")) {
+            return new JsonLexer();
+        } else if (name.endsWith(".properties")) {
+            return new PropertiesLexer();
+        }
+        return null;
+    }
+
+    /** Returns where pattern starts in line[from, length), or -1 if it isn't there. */
+    static int find(char[] line, int length, int from, String pattern) {
+        for (int i = from; i + pattern.length() <= length; i++) {
+            if (startsWith(line, length, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean startsWith(char[] line, int length, int at, String pattern) {
+        if (at + pattern.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            if (line[at + i] != pattern.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset after the string that starts with the quote at line[start], skipping characters
+     * escaped with a backslash. A string that isn't closed runs to the end of the line.
+     */
+    static int quotedEnd(char[] line, int length, int start) {
+        char quote = line[start];
+        for (int i = start + 1; i < length; i++) {
+            if (line[i] == '\\') {
+                i++;
+            } else if (line[i] == quote) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    /** Returns the offset after the Java identifier that starts at line[start]. */
+    static int wordEnd(char[] line, int length, int start) {
+        int i = start + 1;
+        while (i < length && Character.isJavaIdentifierPart(line[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Returns the offset after the number that starts at line[start], including signs after an exponent. */
+    static int numberEnd(char[] line, int length, int start) {
+        int i = start + 1;
+        while (i < length) {
+            char c = line[i];
+            char prev = line[i - 1];
+            boolean exponentSign = (c == '+' || c == '-') && (prev == 'e' || prev == 'E' || prev == 'p' || prev == 'P');
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '_' && !exponentSign) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+}
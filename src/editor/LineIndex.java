@@ -0,0 +1,253 @@
+package editor;
+
+public final class LineIndex {
+    /**
+         A LineIndex knows where every line of the laid out text starts.
+         It is a height-balanced (AVL) tree with one node per line. Each node holds the number of characters on its
+         line, and also how many lines and characters there are in its subtree. The start of a line is the number
+         of characters on the lines before it, so going from a line to its start offset, or from an offset to the
+         line it is on, follows one path down the tree and takes O(log n).
+         Every line is the same height, so going from a y position to a line is just y / line height.
+         Like a Rope, a LineIndex never changes. Edits return a new LineIndex that shares all the untouched nodes
+         with the old one.
+    */
+
+    private final Node root;
+
+    private LineIndex(Node root) {
+        this.root = root;
+    }
+
+    /** Node is one line. */
+    private static final class Node {
+        final Node left;
+        final Node right;
+        final int length; // Number of characters on this line
+        final int height;
+        final int count; // Number of lines in this subtree
+        final int total; // Number of characters in this subtree
+
+        Node(Node left, int length, Node right) {
+            this.left = left;
+            this.right = right;
+            this.length = length;
+            height = Math.max(height(left), height(right)) + 1;
+            count = count(left) + 1 + count(right);
+            total = total(left) + length + total(right);
+        }
+    }
+
+    /** Returns an index with a single line holding all textLength characters. */
+    public static LineIndex single(int textLength) {
+        return new LineIndex(new Node(null, textLength, null));
+    }
+
+    /** Returns the number of lines. */
+    public int lineCount() {
+        return root.count;
+    }
+
+    /** Returns the offset of the first character on line. */
+    public int start(int line) {
+        if (line < 0 || line >= root.count) {
+            throw new IndexOutOfBoundsException("line " + line + " of " + root.count);
+        }
+        int start = 0;
+        Node node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (line < leftCount) {
+                node = node.left;
+            } else if (line == leftCount) {
+                return start + total(node.left);
+            } else {
+                start += total(node.left) + node.length;
+                line -= leftCount + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /** Returns the last line that starts at or before offset. */
+    public int lineOf(int offset) {
+        int line = 0;
+        Node node = root;
+        while (node != null) {
+            int leftTotal = total(node.left);
+            if (offset < leftTotal) {
+                node = node.left;
+            } else if (offset < leftTotal + node.length) {
+                return line + count(node.left);
+            } else {
+                offset -= leftTotal + node.length;
+                line += count(node.left) + 1;
+                node = node.right;
+            }
+        }
+        // offset is at (or past) the end of the text, which belongs to the last line
+        return root.count - 1;
+    }
+
+    /** Returns the index after count characters were inserted at offset: the line they landed on gets longer. */
+    public LineIndex insertText(int offset, int count) {
+        int line = lineOf(offset);
+        return new LineIndex(setLength(root, line, length(root, line) + count));
+    }
+
+    /**
+     * Returns the index after count characters were deleted at offset. Lines that started inside the deleted
+     * characters go away, and the line the deletion started on gets shorter.
+     */
+    public LineIndex deleteText(int offset, int count) {
+        int first = lineOf(offset);
+        int next = lineOf(offset + count) + 1;
+        int end = next < root.count ? start(next) - count : root.total - count;
+        Node[] split = split(root, next);
+        Node[] head = split(split[0], first);
+        Node line = new Node(null, end - start(first), null);
+        return new LineIndex(concat(concat(head[0], line), split[1]));
+    }
+
+    /**
+     * Returns the index with lines [from, to) replaced by count lines that start at starts[0] ... starts[count - 1].
+     * The new lines have to cover exactly the same characters as the old ones, so starts[0] has to be start(from).
+     */
+    public LineIndex replace(int from, int to, int[] starts, int count) {
+        Node[] split = split(root, to);
+        Node[] head = split(split[0], from);
+        int end = starts[0] + total(head[1]);
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = (i + 1 < count ? starts[i + 1] : end) - starts[i];
+        }
+        return new LineIndex(concat(concat(head[0], build(lengths, 0, count)), split[1]));
+    }
+
+    /** Builds a perfectly balanced tree out of lengths[from, to). */
+    private static Node build(int[] lengths, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node(build(lengths, from, mid), lengths[mid], build(lengths, mid + 1, to));
+    }
+
+    private static int length(Node node, int line) {
+        while (true) {
+            int leftCount = count(node.left);
+            if (line < leftCount) {
+                node = node.left;
+            } else if (line == leftCount) {
+                return node.length;
+            } else {
+                line -= leftCount + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /** Returns node with the length of line changed. The shape of the tree stays the same. */
+    private static Node setLength(Node node, int line, int length) {
+        int leftCount = count(node.left);
+        if (line < leftCount) {
+            return new Node(setLength(node.left, line, length), node.length, node.right);
+        } else if (line == leftCount) {
+            return new Node(node.left, length, node.right);
+        }
+        return new Node(node.left, node.length, setLength(node.right, line - leftCount - 1, length));
+    }
+
+    /** Splits node into the lines before line and the lines from line on. */
+    private static Node[] split(Node node, int line) {
+        if (node == null) {
+            return new Node[] {null, null};
+        }
+        int leftCount = count(node.left);
+        if (line <= leftCount) {
+            Node[] split = split(node.left, line);
+            return new Node[] {split[0], join(split[1], node.length, node.right)};
+        }
+        Node[] split = split(node.right, line - leftCount - 1);
+        return new Node[] {join(node.left, node.length, split[0]), split[1]};
+    }
+
+    /** Puts all the lines of right after all the lines of left. */
+    private static Node concat(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        Node[] split = split(left, left.count - 1);
+        return join(split[0], split[1].length, right);
+    }
+
+    /** Makes a balanced tree of the lines in left, then a line of the given length, then the lines in right. */
+    private static Node join(Node left, int length, Node right) {
+        if (height(left) > height(right) + 1) {
+            return joinRight(left, length, right);
+        }
+        if (height(right) > height(left) + 1) {
+            return joinLeft(left, length, right);
+        }
+        return new Node(left, length, right);
+    }
+
+    private static Node joinRight(Node left, int length, Node right) {
+        Node middle;
+        if (height(left.right) <= height(right) + 1) {
+            middle = new Node(left.right, length, right);
+            if (height(middle) > height(left.left) + 1) {
+                middle = rotateRight(middle);
+            }
+        } else {
+            middle = joinRight(left.right, length, right);
+        }
+        Node joined = new Node(left.left, left.length, middle);
+        if (height(middle) > height(left.left) + 1) {
+            return rotateLeft(joined);
+        }
+        return joined;
+    }
+
+    private static Node joinLeft(Node left, int length, Node right) {
+        Node middle;
+        if (height(right.left) <= height(left) + 1) {
+            middle = new Node(left, length, right.left);
+            if (height(middle) > height(right.right) + 1) {
+                middle = rotateLeft(middle);
+            }
+        } else {
+            middle = joinLeft(left, length, right.left);
+        }
+        Node joined = new Node(middle, right.length, right.right);
+        if (height(middle) > height(right.right) + 1) {
+            return rotateRight(joined);
+        }
+        return joined;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        return new Node(new Node(node.left, node.length, right.left), right.length, right.right);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        return new Node(left.left, left.length, new Node(left.right, node.length, node.right));
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int count(Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private static int total(Node node) {
+        return node == null ? 0 : node.total;
+    }
+
+}
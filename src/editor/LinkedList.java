@@ -0,0 +1,1219 @@
+package editor;
+
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+
+public class LinkedList {
+    /**
+         The LinkedList is the entire text.
+         The characters are kept in a Rope, which stores them in compact char arrays instead of one object per
+         character. The cursor is an offset into the Rope: new characters are added at the cursor, so you delete
+         the character before the cursor (when using backspace). The cursor is drawn at the position of the
+         character at the cursor offset (or at the end of the text if it is past the last character).
+         A LineIndex keeps track of the offset of the first character on every line, and finds the line an offset
+         is on in O(log n). Where the lines wrap is worked out by a LayoutEngine, which doesn't need JavaFX, and
+         drawing is left to a Renderer, which only draws the lines that are inside the window: as Text nodes, or
+         painted on Canvases. Newline characters are left out of the lines so every line has the same height.
+         Edits change the Rope right away but only remember which characters changed. The line breaks, the Text
+         nodes and the cursor are worked out by layout(), which the Editor calls once per frame, so a burst of
+         keys costs one layout. Anything that needs the line breaks calls layout() first.
+         The selection runs from an anchor to the cursor. Typing, deleting, cutting and pasting over it change
+         the whole range with one splice of the Rope, however long it is.
+         When the window gets wider or narrower, a long text is wrapped again in two steps: the paragraphs in
+         the window right away, then all of it in pieces on every core in the background. Until that is done
+         the lines outside the window keep their old width.
+         A text in a tab that isn't shown is hidden: it has no Text nodes and no cursor until it is shown again.
+         A read-only text ignores every edit. A PagedFile uses one to show a page of a file that is too big to
+         read in, and swaps in a new page with setPage().
+         A text with a Lexer is highlighted by a Highlighter, which tells the renderer which lines to draw again
+         once it has lexed them in the background.
+         Every edit is also written down in the Journal of the text, if it has one.
+         There can be more cursors besides the main one (see Cursors). Typing, deleting and pasting with them
+         makes the same edit at every cursor, one after the other in the Rope, but it is one edit in the history
+         and the lines are still laid out once, at the next layout(). The journal gets all of its records at
+         once, and the highlighter and the minimap hear about it as one edit. Moving moves them all the same way.
+         A big file is read in a piece at a time as the window gets near the end of what is there. Whatever
+         needs all of it, like saving or searching, has the rest read on a background thread shared by every
+         text, and goes on once it has been added to the end with one edit and one layout.
+    */
+
+    private static final int STARTING_FONT_SIZE = 20;
+    private static final Metrics.Operation RENDER = Metrics.operation("render");
+    private static final Metrics.Operation LAYOUT = Metrics.operation("layout");
+    private static final Metrics.Operation CURSOR = Metrics.operation("cursor");
+    private static final Metrics.Operation REWRAP = Metrics.operation("rewrap");
+    private static final int BACKGROUND_REWRAP = 1 << 20; // Shorter texts are wrapped again all at once
+    private static final int PARAGRAPH_SCAN = 1000; // Most lines to look back for the start of a paragraph
+    private static boolean drawOnCanvas; // Whether the LinkedLists made from now on paint their lines on Canvases
+
+    private static ExecutorService loadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "load");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Rope text = Rope.EMPTY;
+    private int cursor;
+    private int anchor = -1; // The end of the selection the cursor is not at, -1 if nothing is selected
+    private Group root;
+    private String fontName = "Verdana";
+    private int fontSize = STARTING_FONT_SIZE;
+    private int windowHeight;
+    private int windowWidth;
+    private Rectangle cursorRec;
+    private LineIndex lines = LineIndex.single(0);
+    private Renderer renderer;
+    private FontMetricsCache metrics;
+    private LayoutEngine engine;
+    private FileLoader loader; // Only set while part of the file still hasn't been read
+    private ArrayList<Runnable> whenLoaded; // Waiting for the rest of the file, null unless it is being read
+    private long version;
+    private int lineHeight;
+    private EditHistory history = new EditHistory();
+    private int dirtyFrom = -1; // The characters in [dirtyFrom, dirtyTo) changed since the last layout, -1 if none
+    private int dirtyTo;
+    private boolean cursorDirty;
+    private int rewraps; // Goes up every time the width changes, so a background re-wrap knows it is too late
+    private boolean readOnly;
+    private Highlighter highlighter; // null if the text isn't highlighted
+    private Journal journal; // null if the edits aren't written down
+    private Minimap minimap; // null if the text isn't shown on a Minimap
+    private Cursors cursors = new Cursors(); // The cursors besides the main one
+
+
+    public LinkedList(Group root, int windowHeight, int windowWidth) {
+        this.root = root;
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+        cursor = 0;
+        if (drawOnCanvas) {
+            renderer = new CanvasRenderer(root, this, windowWidth, windowHeight);
+        } else {
+            renderer = new ViewportRenderer(root, this, windowHeight);
+        }
+        updateFont();
+    }
+
+    /** Makes the LinkedLists made from now on paint their lines on Canvases if canvas is true, not Text nodes. */
+    public static void setDrawOnCanvas(boolean canvas) {
+        drawOnCanvas = canvas;
+    }
+
+    /** Adds toBeAdded where the cursor is, in place of the selection if there is one. */
+    public void add(String toBeAdded) {
+        if (readOnly) {
+            return;
+        }
+        if (cursors.size() > 0) {
+            editEveryCursor(new String[] {toBeAdded}, false);
+            return;
+        }
+        if (hasSelection()) {
+            replaceSelection(toBeAdded);
+            return;
+        }
+        // The new text goes right before the cursor, so the cursor moves along to stay after it
+        int offset = cursor;
+        history.record(offset, "", toBeAdded, cursor, cursor + toBeAdded.length());
+        cursor += toBeAdded.length();
+        replace(offset, 0, toBeAdded);
+    }
+
+
+    /** Highlights the text with lexer from now on, or stops highlighting it if lexer is null. */
+    public void setLexer(Lexer lexer) {
+        if (lexer == null) {
+            highlighter = null;
+        } else {
+            highlighter = new Highlighter(lexer, new Highlighter.Listener() {
+                @Override
+                public void restyled(int fromLine, int toLine) {
+                    // The Highlighter counts lines between newlines, the renderer counts wrapped lines
+                    int from = lineOf(text.lineStart(fromLine));
+                    int to = toLine < text.lineCount() ? lineOf(text.lineStart(toLine)) : lineCount();
+                    renderer.invalidate(from, to);
+                    renderer.update();
+                }
+            });
+            highlighter.reset(text);
+        }
+        renderer.invalidate(0, Integer.MAX_VALUE);
+        renderer.update();
+    }
+
+    /** Tells minimap about every edit from now on, or nothing if it is null. */
+    void setMinimap(Minimap minimap) {
+        this.minimap = minimap;
+    }
+
+    /** Writes every edit from now on down in journal, or in nothing if it is null. */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Replaces the text with recovered, a later version of it that was got back from a Journal. Only the part
+     * that is different is replaced, as one edit that can be undone.
+     */
+    public void recover(Rope recovered) {
+        int prefix = text.commonPrefix(recovered);
+        if (prefix == text.length() && prefix == recovered.length()) {
+            return;
+        }
+        int suffix = text.commonSuffix(recovered, Math.min(text.length(), recovered.length()) - prefix);
+        int to = text.length() - suffix;
+        Rope inserted = recovered.subSequence(prefix, recovered.length() - suffix);
+        history.record(prefix, text.subSequence(prefix, to), inserted, cursor, prefix + inserted.length());
+        cursor = prefix + inserted.length();
+        replace(prefix, to - prefix, inserted);
+    }
+
+    /** Makes every edit do nothing if readOnly is true. */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Replaces all of the text with page, which can't be undone, and moves the cursor to the top. Works even
+     * if the text is read only.
+     */
+    public void setPage(String page) {
+        text = Rope.of(page);
+        cursor = 0;
+        anchor = -1;
+        cursors.clear();
+        history = new EditHistory();
+        version++;
+        if (highlighter != null) {
+            highlighter.reset(text);
+        }
+        if (minimap != null) {
+            minimap.reset(text);
+        }
+        render();
+    }
+
+    /** Adds the initial text from the opened file. Only the first piece of a big file is read now. */
+    public void addInitial(FileLoader initial) {
+        loader = initial;
+        try {
+            text = Rope.of(initial.next());
+        } catch (IOException ioException) {
+            System.out.println("Error loading file.");
+        }
+        if (!initial.hasMore()) {
+            loader = null;
+        }
+        // If the end of the file isn't there yet, start at the top instead
+        cursor = loader == null ? text.length() : 0;
+        if (highlighter != null) {
+            highlighter.reset(text);
+        }
+        if (minimap != null) {
+            minimap.reset(text);
+        }
+        render();
+    }
+
+    /** Reads more of the file until there are at least two windows full of lines below line. */
+    private void loadNear(int line) {
+        int windowLines = windowHeight / lineHeight + 1;
+        // The rest of the file is already being read in the background
+        while (loader != null && whenLoaded == null && line + 2 * windowLines >= lastLine()) {
+            loadMore();
+        }
+    }
+
+    /** Reads all of the file that hasn't been read yet, unless the rest is already being read in the background. */
+    public void finishLoading() {
+        while (loader != null && whenLoaded == null) {
+            loadMore();
+        }
+    }
+
+    /**
+     * Reads all of the file that hasn't been read yet on the background thread, then runs then on the JavaFX
+     * thread. If all of it is there already, then runs right away.
+     */
+    public void finishLoading(Runnable then) {
+        if (loader == null) {
+            then.run();
+            return;
+        }
+        if (whenLoaded != null) {
+            whenLoaded.add(then);
+            return;
+        }
+        whenLoaded = new ArrayList<Runnable>();
+        whenLoaded.add(then);
+        final FileLoader rest = loader;
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Rope read = Rope.EMPTY;
+                try {
+                    while (rest.hasMore()) {
+                        read = read.insert(read.length(), rest.next());
+                    }
+                } catch (IOException ioException) {
+                    System.out.println("Error loading file.");
+                    close(rest);
+                }
+                final Rope tail = read;
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        loader = null;
+                        append(tail);
+                        ArrayList<Runnable> waiting = whenLoaded;
+                        whenLoaded = null;
+                        for (Runnable then : waiting) {
+                            then.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /** Adds the next piece of the file to the end of the text. */
+    private void loadMore() {
+        // The new piece is laid out right away, since loadNear needs to know how many lines there are now
+        layout();
+        try {
+            String chunk = loader.next();
+            if (!loader.hasMore()) {
+                loader = null;
+            }
+            append(chunk);
+        } catch (IOException ioException) {
+            System.out.println("Error loading file.");
+            close(loader);
+            loader = null;
+        }
+    }
+
+    /** Adds chunk of the file to the end of the text and lays it out. */
+    private void append(CharSequence chunk) {
+        int offset = text.length();
+        Rope before = text;
+        text = chunk instanceof Rope ? text.concat((Rope) chunk) : text.insert(offset, chunk);
+        if (highlighter != null) {
+            highlighter.edited(before, text, offset, 0, chunk.length());
+        }
+        if (minimap != null) {
+            minimap.edited(before, text, offset, 0, chunk.length());
+        }
+        relayout(offset, offset + chunk.length());
+    }
+
+    /** Lets go of the file file was reading after it failed. */
+    private static void close(FileLoader file) {
+        try {
+            file.close();
+        } catch (IOException closeException) {
+            System.out.println("Error closing file.");
+        }
+    }
+
+    /** Adds pasted where the cursor is, in place of the selection if there is one. It is undone on its own. */
+    public void paste(String pasted) {
+        if (readOnly) {
+            return;
+        }
+        if (cursors.size() > 0) {
+            editEveryCursor(piecesFor(pasted), false);
+            return;
+        }
+        history.breakMerge();
+        if (hasSelection()) {
+            replaceSelection(pasted);
+        } else if (pasted.length() > 0) {
+            int offset = cursor;
+            history.record(offset, "", pasted, cursor, cursor + pasted.length());
+            cursor += pasted.length();
+            replace(offset, 0, pasted);
+        }
+        history.breakMerge();
+    }
+
+    /**
+     * Deletes the character before the cursor, or the selection if there is one. A character is everything
+     * Graphemes counts as one, like an emoji, which can be more than one char.
+     */
+    public void delete() {
+        if (readOnly) {
+            return;
+        }
+        if (cursors.size() > 0) {
+            editEveryCursor(new String[] {""}, true);
+        } else if (hasSelection()) {
+            deleteSelection();
+        } else if (cursor > 0) {
+            int from = Graphemes.previous(text, cursor);
+            history.record(from, text.substring(from, cursor), "", cursor, from);
+            int count = cursor - from;
+            cursor = from;
+            replace(cursor, count, "");
+        }
+    }
+
+    /** Takes back the last edit that hasn't been undone yet. */
+    public void undo() {
+        if (readOnly) {
+            return;
+        }
+        EditHistory.Edit edit = history.undo();
+        if (edit != null) {
+            cursors.clear();
+            cursor = edit.cursorBefore();
+            replace(edit.offset(), edit.inserted().length(), edit.removed());
+        }
+    }
+
+    /** Makes the last undone edit again. */
+    public void redo() {
+        if (readOnly) {
+            return;
+        }
+        EditHistory.Edit edit = history.redo();
+        if (edit != null) {
+            cursors.clear();
+            cursor = edit.cursorAfter();
+            replace(edit.offset(), edit.removed().length(), edit.inserted());
+        }
+    }
+
+    /** Deletes the selected characters. */
+    public void deleteSelection() {
+        if (cursors.size() > 0 && !readOnly) {
+            editEveryCursor(new String[] {""}, false);
+        } else if (hasSelection() && !readOnly) {
+            history.breakMerge();
+            replaceSelection("");
+        }
+    }
+
+    /** Replaces the selected characters with inserted as one edit, and leaves the cursor after inserted. */
+    private void replaceSelection(String inserted) {
+        int from = selectionStart();
+        int to = selectionEnd();
+        // The removed characters are a slice of the Rope, so cutting a lot of text doesn't copy it
+        history.record(from, text.subSequence(from, to), inserted, cursor, from + inserted.length());
+        cursor = from + inserted.length();
+        replace(from, to - from, inserted);
+    }
+
+    /**
+     * Replaces the selection of every cursor, or the character before every cursor without one if backspace is
+     * true, with a piece. pieces has a String for every cursor in order, or only one that goes in at all of
+     * them. It is one edit, and the lines from the first cursor to the last are laid out at the next layout().
+     */
+    private void editEveryCursor(String[] pieces, boolean backspace) {
+        int count = cursors.size() + 1;
+        int main = cursors.firstAtOrAfter(cursor);
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i == main ? cursor : cursors.offset(i < main ? i : i - 1);
+            int other = i == main ? anchor : cursors.anchor(i < main ? i : i - 1);
+            if (other < 0 || other == offset) {
+                other = backspace ? Graphemes.previous(text, offset) : offset;
+            }
+            // A selection can't reach back over the cursor before it
+            int floor = i > 0 ? ends[i - 1] : 0;
+            starts[i] = Math.max(floor, Math.min(offset, other));
+            ends[i] = Math.max(starts[i], Math.max(offset, other));
+        }
+        Rope before = text;
+        int cursorBefore = cursor;
+        int shift = 0;
+        int[] after = new int[count];
+        int[] offsets = new int[count];
+        int[] removed = new int[count];
+        String[] inserted = new String[count];
+        int edits = 0;
+        for (int i = 0; i < count; i++) {
+            String piece = pieces[pieces.length == 1 ? 0 : i];
+            int offset = starts[i] + shift;
+            if (ends[i] > starts[i] || piece.length() > 0) {
+                offsets[edits] = offset;
+                removed[edits] = ends[i] - starts[i];
+                inserted[edits] = piece;
+                edits++;
+            }
+            after[i] = offset + piece.length();
+            shift += piece.length() - (ends[i] - starts[i]);
+        }
+        if (edits > 0) {
+            replace(offsets, removed, inserted, edits);
+        }
+        if (text != before) {
+            int from = starts[0];
+            int to = ends[count - 1];
+            history.breakMerge();
+            history.record(from, before.subSequence(from, to), text.subSequence(from, to + shift), cursorBefore,
+                    after[main]);
+            history.breakMerge();
+        }
+        cursor = after[main];
+        anchor = -1;
+        cursors.clear();
+        for (int i = 0; i < count; i++) {
+            if (i != main) {
+                cursors.add(after[i], -1);
+            }
+        }
+        cursors.sort(cursor);
+        updateCursor();
+    }
+
+    /** Splits pasted into one line for every cursor if it has that many lines, or leaves it whole if not. */
+    private String[] piecesFor(String pasted) {
+        String[] pieces = pasted.split("\n", -1);
+        if (pasted.endsWith("\n")) {
+            pieces = Arrays.copyOf(pieces, pieces.length - 1);
+        }
+        return pieces.length == cursors.size() + 1 ? pieces : new String[] {pasted};
+    }
+
+    /** Starts selecting from every cursor, unless it has a selection already. Moving the cursors selects. */
+    public void startSelection() {
+        if (anchor < 0) {
+            anchor = cursor;
+        }
+        for (int i = 0; i < cursors.size(); i++) {
+            if (cursors.anchor(i) < 0) {
+                cursors.set(i, cursors.offset(i), cursors.offset(i));
+            }
+        }
+    }
+
+    /** Selects nothing. */
+    public void clearSelection() {
+        for (int i = 0; i < cursors.size(); i++) {
+            cursors.set(i, cursors.offset(i), -1);
+        }
+        if (anchor >= 0 || cursors.size() > 0) {
+            anchor = -1;
+            updateCursor();
+        }
+    }
+
+    public boolean hasSelection() {
+        for (int i = 0; i < cursors.size(); i++) {
+            if (cursors.anchor(i) >= 0 && cursors.anchor(i) != cursors.offset(i)) {
+                return true;
+            }
+        }
+        return anchor >= 0 && anchor != cursor;
+    }
+
+    /** Returns the offset of the first selected character, or the cursor if nothing is selected. */
+    int selectionStart() {
+        return anchor < 0 ? cursor : Math.min(anchor, cursor);
+    }
+
+    /** Returns the offset after the last selected character, or the cursor if nothing is selected. */
+    int selectionEnd() {
+        return anchor < 0 ? cursor : Math.max(anchor, cursor);
+    }
+
+    /** Returns the selected characters. The selections of more than one cursor go on a line each. */
+    public String selectedText() {
+        if (cursors.size() == 0) {
+            return text.substring(selectionStart(), selectionEnd());
+        }
+        StringBuilder selected = new StringBuilder();
+        int main = cursors.firstAtOrAfter(cursor);
+        for (int i = 0; i <= cursors.size(); i++) {
+            int offset = i == main ? cursor : cursors.offset(i < main ? i : i - 1);
+            int other = i == main ? anchor : cursors.anchor(i < main ? i : i - 1);
+            if (other >= 0 && other != offset) {
+                if (selected.length() > 0) {
+                    selected.append('\n');
+                }
+                selected.append(text, Math.min(offset, other), Math.max(offset, other));
+            }
+        }
+        return selected.toString();
+    }
+
+    /**
+     * Replaces the text with replaced, which has to be the text with every match in matches replaced. It is
+     * one edit and one layout, however many matches there are.
+     */
+    public void replaceAll(Matches matches, Rope replaced) {
+        if (readOnly || matches.size() == 0 || matches.version() != version) {
+            return;
+        }
+        cursors.clear();
+        // Everything before the first match and after the last one stays the same
+        int from = matches.start(0);
+        int to = matches.end(matches.size() - 1);
+        Rope inserted = replaced.subSequence(from, replaced.length() - (text.length() - to));
+        int newCursor = cursor;
+        if (cursor >= to) {
+            newCursor = cursor + replaced.length() - text.length();
+        } else if (cursor > from) {
+            newCursor = from;
+        }
+        history.record(from, text.subSequence(from, to), inserted, cursor, newCursor);
+        cursor = newCursor;
+        replace(from, to - from, inserted);
+    }
+
+    /**
+     * Replaces the count characters at offset with inserted. Only the lines that changed are laid out, at the
+     * next layout().
+     */
+    private void replace(int offset, int count, CharSequence inserted) {
+        replace(new int[] {offset}, new int[] {count}, new CharSequence[] {inserted}, 1);
+    }
+
+    /**
+     * Makes count replaces one after the other, where the i-th takes out removed[i] characters at offsets[i] and
+     * puts inserted[i] there, and offsets[i] is after the ones before it. The journal gets them all at once, and
+     * the highlighter and the minimap hear about them as one edit from the first to the last.
+     */
+    private void replace(int[] offsets, int[] removed, CharSequence[] inserted, int count) {
+        // Every edit ends the selection
+        anchor = -1;
+        Rope before = text;
+        int shift = 0; // How much longer the text got from the edits before the last one
+        for (int i = 0; i < count; i++) {
+            int offset = offsets[i];
+            if (removed[i] > 0) {
+                text = text.delete(offset, offset + removed[i]);
+                removeLines(offset, removed[i]);
+            }
+            if (inserted[i].length() > 0) {
+                text = text.insert(offset, inserted[i]);
+                shiftLines(offset, inserted[i].length());
+            }
+            if (i < count - 1) {
+                shift += inserted[i].length() - removed[i];
+            }
+        }
+        if (journal != null) {
+            journal.record(offsets, removed, inserted, count);
+        }
+        version++;
+        int from = offsets[0];
+        int last = offsets[count - 1];
+        int spanRemoved = last - shift + removed[count - 1] - from;
+        int spanAdded = last + inserted[count - 1].length() - from;
+        if (highlighter != null) {
+            highlighter.edited(before, text, from, spanRemoved, spanAdded);
+        }
+        if (minimap != null) {
+            minimap.edited(before, text, from, spanRemoved, spanAdded);
+        }
+        changed(from, spanRemoved, spanAdded);
+    }
+
+    /** Remembers that removed characters at offset were replaced by added new ones. */
+    private void changed(int offset, int removed, int added) {
+        if (dirtyFrom < 0) {
+            dirtyFrom = offset;
+            dirtyTo = offset + added;
+        } else {
+            // The end of the characters that already changed moves along with the text after the edit
+            if (dirtyTo >= offset + removed) {
+                dirtyTo += added - removed;
+            } else if (dirtyTo > offset) {
+                dirtyTo = offset + added;
+            }
+            dirtyFrom = Math.min(dirtyFrom, offset);
+            dirtyTo = Math.max(dirtyTo, offset + added);
+        }
+        cursorDirty = true;
+    }
+
+    /**
+     * Lays out the lines that changed since the last layout and moves the cursor to where it is now. Returns
+     * true if there was anything to do.
+     */
+    public boolean layout() {
+        if (dirtyFrom < 0 && !cursorDirty) {
+            return false;
+        }
+        if (dirtyFrom >= 0) {
+            int from = dirtyFrom;
+            dirtyFrom = -1;
+            LAYOUT.start();
+            relayout(from, dirtyTo);
+            LAYOUT.stop();
+        }
+        if (highlighter != null) {
+            highlighter.start();
+        }
+        cursorDirty = false;
+        CURSOR.start();
+        placeCursor();
+        CURSOR.stop();
+        // The selection ends at the cursor, so it has to be drawn again too
+        renderer.updateHighlights();
+        return true;
+    }
+
+    /** Sets the Rectangle cursor to the correct cursor position. */
+    public void setCursor(Rectangle cursor) {
+        cursorRec = cursor;
+        cursorRec.setFill(Color.BLACK);
+        updateCursor();
+    }
+
+    /** Marks the cursor to be moved to where it is now at the next layout(). */
+    private void updateCursor() {
+        cursorDirty = true;
+    }
+
+    /** Updates the cursor size and position. */
+    private void placeCursor() {
+        if (cursorRec == null) {
+            return;
+        }
+        int line = lineOf(cursor);
+        cursorRec.setHeight(lineHeight);
+        cursorRec.setX((int) xOf(cursor, line));
+        cursorRec.setY(line * lineHeight);
+    }
+
+    /** Moves the cursor to the closest character to (xPos, yPos). */
+    public void moveCursor(int xPos, int yPos) {
+        layout();
+        int line = lineAtY(yPos);
+        cursors.clear();
+        cursor = engine.closest(text, lines, line, xPos);
+        loadNear(line);
+        updateCursor();
+    }
+
+    /**
+     * Adds a cursor at the character closest to (xPos, yPos), which becomes the main one. If there is a cursor
+     * there already, it is taken away instead.
+     */
+    public void addCursor(int xPos, int yPos) {
+        layout();
+        int line = lineAtY(yPos);
+        int offset = engine.closest(text, lines, line, xPos);
+        if (offset == cursor) {
+            if (cursors.size() > 0) {
+                // The last of the other cursors becomes the main one
+                cursor = cursors.offset(cursors.size() - 1);
+                anchor = cursors.anchor(cursors.size() - 1);
+                cursors.remove(cursor);
+            }
+        } else if (!cursors.remove(offset)) {
+            cursors.add(cursor, anchor);
+            cursor = offset;
+            anchor = -1;
+            cursors.sort(cursor);
+        }
+        loadNear(line);
+        updateCursor();
+    }
+
+    /**
+     * Selects the block with corners (fromX, fromY) and (toX, toY), with a cursor on every line of it at toX.
+     * The main cursor is the one on the line at toY. Lines that end before the block get a cursor at their end.
+     */
+    public void selectColumn(int fromX, int fromY, int toX, int toY) {
+        layout();
+        int fromLine = lineAtY(fromY);
+        int toLine = lineAtY(toY);
+        cursors.clear();
+        int step = fromLine <= toLine ? 1 : -1;
+        for (int line = fromLine; line != toLine; line += step) {
+            cursors.add(engine.closest(text, lines, line, toX), engine.closest(text, lines, line, fromX));
+        }
+        anchor = engine.closest(text, lines, toLine, fromX);
+        cursor = engine.closest(text, lines, toLine, toX);
+        cursors.sort(cursor);
+        loadNear(toLine);
+        updateCursor();
+    }
+
+    /** Takes away every cursor but the main one. */
+    public void removeOtherCursors() {
+        if (cursors.size() > 0) {
+            cursors.clear();
+            updateCursor();
+        }
+    }
+
+    /** Returns the cursors besides the main one. */
+    Cursors cursors() {
+        return cursors;
+    }
+
+    /** Returns the line at y position yPos, which can be above or below the text while the mouse is dragged. */
+    private int lineAtY(int yPos) {
+        return Math.min(Math.max(0, yPos / lineHeight), lastLine());
+    }
+
+    /** Returns the offset at the start of the line at y position yPos. */
+    int offsetAtY(int yPos) {
+        layout();
+        return lines.start(lineAtY(yPos));
+    }
+
+    /** Moves the cursor to offset. */
+    public void moveCursorTo(int offset) {
+        layout();
+        cursors.clear();
+        cursor = Math.max(0, Math.min(offset, text.length()));
+        loadNear(lineOf(cursor));
+        updateCursor();
+    }
+
+    /** Returns the offset of the cursor. */
+    public int cursorOffset() {
+        return cursor;
+    }
+
+    public int cursorX() {
+        layout();
+        return (int) xOf(cursor, lineOf(cursor));
+    }
+
+    /** Returns the x position of offset, which has to be on line. */
+    double xOf(int offset, int line) {
+        return engine.xOf(text, lines, offset, line);
+    }
+
+    public int cursorY() {
+        layout();
+        return lineOf(cursor) * lineHeight;
+    }
+
+    /** Returns the y position of the line offset is on. */
+    public int yOf(int offset) {
+        layout();
+        return lineOf(Math.max(0, Math.min(offset, text.length()))) * lineHeight;
+    }
+
+    /** Returns how far the text can be scrolled down with the window still full, which is 0 if it fits. */
+    public int lastScrollY() {
+        return Math.max(0, getEnd() - windowHeight);
+    }
+
+    /** Returns the Y position of the end of the document (y pos of the last line plus its height). */
+    public int getEnd() {
+        layout();
+        return lineCount() * lineHeight;
+    }
+
+    /** Changes the font size for the whole text. */
+    public void changeFontSize(int sizeChange) {
+        int oldSize = fontSize;
+        fontSize += sizeChange;
+        if (fontSize < 0) fontSize = 0;
+        if (fontSize == oldSize) {
+            return;
+        }
+        // The widths measured at the old size are no use to this text any more, but other tabs may still use them
+        FontMetricsCache.release(fontName, oldSize);
+        updateFont();
+        render();
+    }
+
+    /** Looks up the metrics of the current font and works out how tall a line is. */
+    private void updateFont() {
+        metrics = FontMetricsCache.get(fontName, fontSize);
+        lineHeight = metrics.lineHeight();
+        engine = new LayoutEngine(metrics, windowWidth);
+        renderer.setFont(metrics.font(), lineHeight);
+    }
+
+    /** Renders the whole text. */
+    public void render() {
+        RENDER.start();
+        dirtyFrom = -1;
+        lines = LineIndex.single(text.length());
+        draw(engine.reflow(text, lines, 0, text.length() + 1));
+        updateCursor();
+        RENDER.stop();
+    }
+
+    /** Renders only what an edit could have changed. The text in [from, to) is new (to == from for a delete). */
+    private void relayout(int from, int to) {
+        draw(engine.relayout(text, lines, from, to));
+        updateCursor();
+    }
+
+    /** Takes the lines the LayoutEngine laid out again and has the renderer draw the ones that changed. */
+    private void draw(LayoutEngine.Reflow reflow) {
+        lines = reflow.lines();
+        drawLines(reflow.first(), reflow.removed(), reflow.added());
+    }
+
+    /** Moves the line starts after offset along by count, for count characters inserted at offset. */
+    private void shiftLines(int offset, int count) {
+        lines = lines.insertText(offset, count);
+    }
+
+    /** Fixes up the line starts for count characters deleted at offset. Lines that started inside go away. */
+    private void removeLines(int offset, int count) {
+        int from = lineOf(offset) + 1;
+        int to = lineOf(offset + count) + 1;
+        lines = lines.deleteText(offset, count);
+        if (to > from) {
+            // Only marked, the lines get drawn once they are laid out again
+            renderer.invalidate(from, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Tells the renderer that lines [from, from + removed) were replaced by added new lines. If the number of
+     * lines changed, every line below moved too.
+     */
+    private void drawLines(int from, int removed, int added) {
+        if (removed == added) {
+            renderer.invalidate(from, from + added);
+        } else {
+            renderer.invalidate(from, Integer.MAX_VALUE);
+        }
+        renderer.update();
+    }
+
+    /** Returns the number of lines. */
+    int lineCount() {
+        return lines.lineCount();
+    }
+
+    /** Returns the number of the last line. */
+    private int lastLine() {
+        return lines.lineCount() - 1;
+    }
+
+    /** Returns the characters on the line, leaving out the newline at the end. */
+    String lineString(int line) {
+        int from = lines.start(line);
+        int to = line < lastLine() ? lines.start(line + 1) : text.length();
+        if (to > from && text.charAt(to - 1) == '\n') {
+            to--;
+        }
+        return text.substring(from, to);
+    }
+
+    /** Returns true if the text has a Lexer. */
+    boolean isHighlighted() {
+        return highlighter != null;
+    }
+
+    /** Hands every token on line to tokens, at offsets counting from the start of the line. */
+    void tokens(int line, Lexer.Tokens tokens) {
+        int from = lines.start(line);
+        int to = line < lastLine() ? lines.start(line + 1) : text.length();
+        highlighter.tokens(from, to, tokens);
+    }
+
+    /** Returns the text as it is right now. The Rope never changes, so it can be handed to another thread. */
+    public Rope snapshot() {
+        return text;
+    }
+
+    /** Returns a number that goes up every time the text changes. */
+    public long version() {
+        return version;
+    }
+
+    /** Returns true once all of the file has been read in. */
+    public boolean isLoaded() {
+        return loader == null;
+    }
+
+    /** Updates the size of the window. Only a new width changes where the lines wrap. */
+    public void updateWindowSize(int newWidth, int newHeight) {
+        windowHeight = newHeight;
+        renderer.setWindowSize(newWidth, newHeight);
+        if (newWidth != windowWidth) {
+            windowWidth = newWidth;
+            engine = new LayoutEngine(metrics, windowWidth);
+            rewrap();
+        }
+    }
+
+    /**
+     * Throws away the Text nodes and lets go of the cursor, for when the text is in a tab that isn't shown.
+     * Only the Rope and the line breaks are kept.
+     */
+    public void hide() {
+        layout();
+        root.getChildren().remove(cursorRec);
+        cursorRec = null;
+        renderer.release();
+    }
+
+    /** Shows the text again in a window of the given size, drawing cursor as its cursor. */
+    public void show(Rectangle cursor, int newWidth, int newHeight) {
+        root.getChildren().add(cursor);
+        setCursor(cursor);
+        updateWindowSize(newWidth, newHeight);
+    }
+
+    /** Wraps the text again at the new window width, the part in the window first. */
+    private void rewrap() {
+        rewraps++;
+        if (text.length() < BACKGROUND_REWRAP) {
+            render();
+            return;
+        }
+        layout();
+        REWRAP.start();
+        int top = Math.min(renderer.firstLine(), lastLine());
+        int bottom = Math.min(top + windowHeight / lineHeight + 1, lastLine());
+        // A paragraph wraps the same wherever it is, so start at the top of the one at the top of the window
+        int first = top;
+        while (first > 0 && top - first < PARAGRAPH_SCAN && text.charAt(lines.start(first) - 1) != '\n') {
+            first--;
+        }
+        if (first > 0 && text.charAt(lines.start(first) - 1) != '\n') {
+            first = top;
+        }
+        int topOffset = lines.start(top);
+        draw(engine.reflow(text, lines, first, lines.start(bottom)));
+        renderer.setScroll(lineOf(topOffset) * lineHeight);
+        updateCursor();
+        REWRAP.stop();
+        rewrapInBackground();
+    }
+
+    /** Wraps all of the text again on every core, and swaps the new lines in once they are done. */
+    private void rewrapInBackground() {
+        final int id = rewraps;
+        final Rope snapshot = text;
+        final FontMetricsCache.Snapshot widths = metrics.snapshot();
+        final LayoutEngine background = new LayoutEngine(widths, windowWidth);
+        ForkJoinPool.commonPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                final LineIndex wrapped = background.layoutParallel(snapshot);
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishRewrap(id, snapshot, wrapped, widths.missed());
+                    }
+                });
+            }
+        });
+    }
+
+    /** Swaps in the lines of snapshot wrapped in the background, keeping the line at the top of the window. */
+    private void finishRewrap(int id, Rope snapshot, LineIndex wrapped, boolean missed) {
+        if (id != rewraps) {
+            // The width changed again since
+            return;
+        }
+        if (missed) {
+            // Some characters hadn't been measured yet, so their widths were wrong
+            render();
+            return;
+        }
+        if (snapshot != text) {
+            // The text changed while it was being wrapped, and only the lines near the change are right
+            rewrapInBackground();
+            return;
+        }
+        layout();
+        int topOffset = lines.start(Math.min(renderer.firstLine(), lastLine()));
+        lines = wrapped;
+        renderer.invalidate(0, Integer.MAX_VALUE);
+        renderer.setScroll(lineOf(topOffset) * lineHeight);
+        updateCursor();
+    }
+
+    /** Returns the y position at the top of the window. It moves when the text is wrapped again. */
+    public int scrollY() {
+        return renderer.scrollY();
+    }
+
+    /** Scrolls so that y position scrollY is at the top of the window. */
+    public void scrollTo(int scrollY) {
+        layout();
+        loadNear((scrollY + windowHeight) / lineHeight);
+        renderer.setScroll(scrollY);
+    }
+
+    /** Moves every cursor to the beginning of the line it is on. */
+    public void homeKey() {
+        moveEveryCursor(new Runnable() {
+            @Override
+            public void run() {
+                home();
+            }
+        });
+    }
+
+    /** Moves every cursor to the last character of the line it is on. */
+    public void endKey() {
+        moveEveryCursor(new Runnable() {
+            @Override
+            public void run() {
+                end();
+            }
+        });
+    }
+
+    /** Moves every cursor up. */
+    public void moveUp() {
+        moveEveryCursor(new Runnable() {
+            @Override
+            public void run() {
+                up();
+            }
+        });
+    }
+
+    /** Moves every cursor down. */
+    public void moveDown() {
+        moveEveryCursor(new Runnable() {
+            @Override
+            public void run() {
+                down();
+            }
+        });
+    }
+
+    /** Moves every cursor to the right. */
+    public void moveRight() {
+        moveEveryCursor(new Runnable() {
+            @Override
+            public void run() {
+                right();
+            }
+        });
+    }
+
+    /** Moves every cursor to the left. */
+    public void moveLeft() {
+        moveEveryCursor(new Runnable() {
+            @Override
+            public void run() {
+                left();
+            }
+        });
+    }
+
+    /**
+     * Runs move once for every cursor. The other cursors are swapped in as the main one a cursor at a time, so
+     * a move only has to know about the main cursor.
+     */
+    private void moveEveryCursor(Runnable move) {
+        layout();
+        if (cursors.size() > 0) {
+            int mainCursor = cursor;
+            int mainAnchor = anchor;
+            for (int i = 0; i < cursors.size(); i++) {
+                cursor = cursors.offset(i);
+                anchor = cursors.anchor(i);
+                move.run();
+                cursors.set(i, cursor, anchor);
+            }
+            cursor = mainCursor;
+            anchor = mainAnchor;
+        }
+        move.run();
+        cursors.sort(cursor);
+        // A move inside may have laid out with another cursor swapped in
+        updateCursor();
+    }
+
+    /** Moves the cursor to the beginning of the line the cursor is on. */
+    private void home() {
+        cursor = lines.start(lineOf(cursor));
+        updateCursor();
+    }
+
+    /** Moves the cursor to the last character of the line the cursor is on. */
+    private void end() {
+        int line = lineOf(cursor);
+        if (line < lastLine()) {
+            cursor = lines.start(line + 1) - 1;
+        } else {
+            cursor = text.length();
+        }
+        loadNear(line);
+        updateCursor();
+    }
+
+    /** Moves the cursor up. */
+    private void up() {
+        int line = lineOf(cursor);
+        int xPos = cursorX();
+        if (line != 0) {
+            cursor = engine.closest(text, lines, line - 1, xPos);
+            updateCursor();
+        }
+    }
+
+    /** Moves the cursor down. */
+    private void down() {
+        int line = lineOf(cursor);
+        int xPos = cursorX();
+        if (line != lastLine()) {
+            cursor = engine.closest(text, lines, line + 1, xPos);
+            loadNear(line + 1);
+            updateCursor();
+        }
+    }
+
+    /** Moves the cursor to the right, over a whole character. */
+    private void right() {
+        if (cursor < text.length()) {
+            cursor = Graphemes.next(text, cursor);
+            loadNear(lineOf(cursor));
+            updateCursor();
+        }
+    }
+
+    /** Moves the cursor to the left, over a whole character. */
+    private void left() {
+        if (cursor > 0) {
+            cursor = Graphemes.previous(text, cursor);
+            updateCursor();
+        }
+    }
+
+    /** Gets the line number of the line offset is on. */
+    int lineOf(int offset) {
+        return lines.lineOf(offset);
+    }
+
+    /** Returns the offset of the first character on line. */
+    int lineStart(int line) {
+        return lines.start(line);
+    }
+
+    /** Returns the number of characters in the text. */
+    int length() {
+        return text.length();
+    }
+
+    /** Highlights matches, or nothing if matches is null. Only the ones inside the window get drawn. */
+    public void setMatches(Matches matches) {
+        layout();
+        renderer.setMatches(matches);
+    }
+
+}
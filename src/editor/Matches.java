@@ -0,0 +1,92 @@
+package editor;
+
+import java.util.Arrays;
+
+
+public class Matches {
+    /**
+         Matches is the list of places a search found, each one a start and end offset.
+         The Searcher finds them in order from the start of the text, so the list is always sorted and two matches
+         never overlap. That lets us find the matches near an offset with a binary search.
+         A Matches belongs to one version of the text. Once the text changes, the offsets are no good any more.
+    */
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+    private long version;
+    private boolean done;
+
+    public Matches(long version) {
+        this.version = version;
+    }
+
+    /** Adds count matches from starts and ends. They have to come after every match already in the list. */
+    public void add(int[] newStarts, int[] newEnds, int count) {
+        if (size + count > starts.length) {
+            int capacity = Math.max(size + count, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        System.arraycopy(newStarts, 0, starts, size, count);
+        System.arraycopy(newEnds, 0, ends, size, count);
+        size += count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    /** Returns the version of the text the matches are in. */
+    public long version() {
+        return version;
+    }
+
+    /** Returns true once the whole text has been searched. */
+    public boolean isDone() {
+        return done;
+    }
+
+    public void finish() {
+        done = true;
+    }
+
+    /** Returns the index of the first match that ends after offset, or size() if there is none. */
+    public int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Returns the index of the first match that starts at or after offset, or size() if there is none. */
+    public int firstStartingAt(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
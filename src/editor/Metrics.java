@@ -0,0 +1,252 @@
+package editor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+public class Metrics {
+    /**
+         Metrics keeps track of where the time goes. Each kind of work (rendering, saving, handling a key, ...)
+         is an Operation with a LatencyHistogram of how long it took and a count of the bytes it allocated. The
+         bytes come from the JVM's per-thread allocation counter, so they are only there on JVMs that have one.
+         Other numbers, like how many nodes are in the scene, are gauges that only keep their last value.
+         Everything can be written out as JSON or CSV: to the file named by the editor.metrics system property
+         when the editor closes (.csv for CSV, anything else for JSON), and over JMX as editor:type=Metrics if
+         editor.metrics.jmx is true.
+    */
+
+    private static final String FILE_PROPERTY = "editor.metrics";
+    private static final String JMX_PROPERTY = "editor.metrics.jmx";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static LinkedHashMap<String, Operation> operations = new LinkedHashMap<String, Operation>();
+    private static LinkedHashMap<String, Long> gauges = new LinkedHashMap<String, Long>();
+
+    /**
+         An Operation is one kind of work that is timed. start() and stop() go around each time it is done,
+         on one thread at a time; record() can be used from any thread.
+    */
+    public static class Operation {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long allocated;
+        private long startNanos;
+        private long startBytes;
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        public void start() {
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            long nanos = System.nanoTime() - startNanos;
+            record(nanos, allocatedBytes() - startBytes);
+        }
+
+        /** Counts one time the operation took nanos and allocated bytes. */
+        public void record(long nanos, long bytes) {
+            latency.record(nanos);
+            synchronized (this) {
+                allocated += bytes;
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        /** Returns how many bytes the operation allocated on average, or 0 if it never ran. */
+        public synchronized long allocatedPerCall() {
+            long count = latency.count();
+            return count == 0 ? 0 : allocated / count;
+        }
+
+        private synchronized void reset() {
+            latency.reset();
+            allocated = 0;
+        }
+    }
+
+    /** Returns the Operation called name, making it the first time it is asked for. */
+    public static synchronized Operation operation(String name) {
+        Operation operation = operations.get(name);
+        if (operation == null) {
+            operation = new Operation(name);
+            operations.put(name, operation);
+        }
+        return operation;
+    }
+
+    /** Sets the gauge called name to value. */
+    public static synchronized void gauge(String name, long value) {
+        gauges.put(name, value);
+    }
+
+    /** Returns every Operation, in the order they were first asked for. */
+    public static synchronized ArrayList<Operation> operations() {
+        return new ArrayList<Operation>(operations.values());
+    }
+
+    public static synchronized Map<String, Long> gauges() {
+        return new LinkedHashMap<String, Long>(gauges);
+    }
+
+    /** Forgets everything recorded so far. */
+    public static synchronized void reset() {
+        for (Operation operation : operations.values()) {
+            operation.reset();
+        }
+        gauges.clear();
+    }
+
+    /** Returns how many bytes the current thread has allocated so far, or 0 if the JVM doesn't count them. */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /** Returns the percentiles every report shows, from 0 to 100. */
+    public static double[] percentiles() {
+        return PERCENTILES.clone();
+    }
+
+    /** Returns nanos in milliseconds. */
+    public static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /** Returns every Operation and gauge as JSON. Times are in milliseconds. */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"operations\": {");
+        String separator = "\n";
+        for (Operation operation : operations()) {
+            LatencyHistogram latency = operation.latency();
+            json.append(separator).append("    \"").append(operation.name()).append("\": {")
+                    .append("\"count\": ").append(latency.count())
+                    .append(", \"mean\": ").append(format(latency.mean() / 1e6));
+            for (double percentile : PERCENTILES) {
+                json.append(", \"p").append(label(percentile)).append("\": ")
+                        .append(format(millis(latency.percentile(percentile))));
+            }
+            json.append(", \"max\": ").append(format(millis(latency.max())))
+                    .append(", \"allocatedBytes\": ").append(operation.allocatedPerCall()).append("}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"gauges\": {");
+        separator = "\n";
+        for (Map.Entry<String, Long> gauge : gauges().entrySet()) {
+            json.append(separator).append("    \"").append(gauge.getKey()).append("\": ").append(gauge.getValue());
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    /** Returns every Operation as one CSV row, and every gauge as a row with only a value. */
+    public static String toCsv() {
+        StringBuilder csv = new StringBuilder("name,count,mean");
+        for (double percentile : PERCENTILES) {
+            csv.append(",p").append(label(percentile));
+        }
+        csv.append(",max,allocatedBytes,value\n");
+        for (Operation operation : operations()) {
+            LatencyHistogram latency = operation.latency();
+            csv.append(operation.name()).append(',').append(latency.count()).append(',')
+                    .append(format(latency.mean() / 1e6));
+            for (double percentile : PERCENTILES) {
+                csv.append(',').append(format(millis(latency.percentile(percentile))));
+            }
+            csv.append(',').append(format(millis(latency.max()))).append(',')
+                    .append(operation.allocatedPerCall()).append(",\n");
+        }
+        for (Map.Entry<String, Long> gauge : gauges().entrySet()) {
+            csv.append(gauge.getKey());
+            // Gauges only fill in the last column
+            for (int i = 0; i < PERCENTILES.length + 5; i++) {
+                csv.append(',');
+            }
+            csv.append(gauge.getValue()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /** Returns percentile as it goes in a name: 99 for 99, 99_9 for 99.9. */
+    public static String label(double percentile) {
+        if (percentile == Math.rint(percentile)) {
+            return String.valueOf((int) percentile);
+        }
+        return String.valueOf(percentile).replace('.', '_');
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+
+    /** Writes everything to file, as CSV if its name ends in .csv and as JSON otherwise. */
+    public static void write(Path file) throws IOException {
+        String report = file.toString().endsWith(".csv") ? toCsv() : toJson();
+        Files.write(file, report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Writes everything to the file named by the editor.metrics system property, if it is set. */
+    public static void writeIfAsked() {
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file == null || file.isEmpty()) {
+            return;
+        }
+        try {
+            write(Paths.get(file));
+        } catch (IOException ioException) {
+            System.out.println("Error writing metrics.");
+        }
+    }
+
+    /** Makes the metrics readable over JMX, if the editor.metrics.jmx system property is true. */
+    public static void registerIfAsked() {
+        if (!Boolean.getBoolean(JMX_PROPERTY)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBean() {
+                @Override
+                public String getJson() {
+                    return toJson();
+                }
+
+                @Override
+                public String getCsv() {
+                    return toCsv();
+                }
+
+                @Override
+                public void reset() {
+                    Metrics.reset();
+                }
+            }, new ObjectName("editor:type=Metrics"));
+        } catch (JMException jmxException) {
+            System.out.println("Error registering metrics with JMX.");
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package editor;
+
+
+public interface MetricsMXBean {
+    /**
+         MetricsMXBean is what JMX clients like jconsole see of the Metrics, under editor:type=Metrics.
+    */
+
+    /** Returns every operation and gauge as JSON. */
+    String getJson();
+
+    /** Returns every operation and gauge as CSV. */
+    String getCsv();
+
+    /** Forgets everything recorded so far. */
+    void reset();
+
+}
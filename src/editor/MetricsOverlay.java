@@ -0,0 +1,113 @@
+package editor;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.util.Duration;
+
+import java.util.Locale;
+import java.util.Map;
+
+
+public class MetricsOverlay {
+    /**
+         The MetricsOverlay shows the Metrics on top of the text (F12 turns it on and off). Each operation gets a
+         row with how often it ran, its percentiles and its slowest time in milliseconds, and how many KB it
+         allocated each time. It is refreshed twice a second while it is shown, and counts the nodes in the
+         scene each time.
+    */
+
+    private static final Duration REFRESH = Duration.millis(500);
+
+    private Group box = new Group();
+    private Rectangle background = new Rectangle();
+    private Text report = new Text();
+    private Parent scene;
+    private Timeline refresher;
+
+    /** Makes an overlay that counts the nodes under scene. */
+    public MetricsOverlay(Parent scene) {
+        this.scene = scene;
+        background.setFill(Color.rgb(255, 255, 255, 0.85));
+        background.setStroke(Color.LIGHTGRAY);
+        report.setFont(Font.font("Monospaced", 12));
+        report.setX(8);
+        report.setY(18);
+        box.getChildren().addAll(background, report);
+        box.setLayoutX(5);
+        box.setLayoutY(5);
+        box.setVisible(false);
+        box.setMouseTransparent(true);
+
+        refresher = new Timeline(new KeyFrame(REFRESH, new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                refresh();
+            }
+        }));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    /** Returns the node to add to the scene. */
+    public Node node() {
+        return box;
+    }
+
+    /** Shows the overlay if it is hidden and hides it if it is shown. */
+    public void toggle() {
+        box.setVisible(!box.isVisible());
+        if (box.isVisible()) {
+            refresh();
+            refresher.play();
+        } else {
+            refresher.stop();
+        }
+    }
+
+    /** Counts the nodes in the scene and shows the latest numbers. */
+    public void refresh() {
+        Metrics.gauge("nodes", countNodes(scene));
+        StringBuilder lines = new StringBuilder(String.format(Locale.ROOT, "%-12s %7s", "ms", "count"));
+        for (double percentile : Metrics.percentiles()) {
+            lines.append(String.format(Locale.ROOT, " %8s", "p" + Metrics.label(percentile).replace('_', '.')));
+        }
+        lines.append(String.format(Locale.ROOT, " %8s %8s", "max", "KB"));
+        for (Metrics.Operation operation : Metrics.operations()) {
+            LatencyHistogram latency = operation.latency();
+            lines.append(String.format(Locale.ROOT, "%n%-12s %7d", operation.name(), latency.count()));
+            for (double percentile : Metrics.percentiles()) {
+                lines.append(String.format(Locale.ROOT, " %8.2f", Metrics.millis(latency.percentile(percentile))));
+            }
+            lines.append(String.format(Locale.ROOT, " %8.2f %8.1f", Metrics.millis(latency.max()),
+                    operation.allocatedPerCall() / 1024.0));
+        }
+        for (Map.Entry<String, Long> gauge : Metrics.gauges().entrySet()) {
+            lines.append(String.format(Locale.ROOT, "%n%-12s %7d", gauge.getKey(), gauge.getValue()));
+        }
+        report.setText(lines.toString());
+        background.setWidth(report.getLayoutBounds().getWidth() + 16);
+        background.setHeight(report.getLayoutBounds().getHeight() + 10);
+    }
+
+    /** Returns how many nodes there are under parent, counting parent. */
+    private static int countNodes(Parent parent) {
+        int count = 1;
+        for (Node child : parent.getChildrenUnmodifiable()) {
+            if (child instanceof Parent) {
+                count += countNodes((Parent) child);
+            } else {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,348 @@
+package editor;
+
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class Minimap {
+    /**
+         The Minimap is a small picture of the whole text, drawn on a Canvas beside the scroll bar, with the
+         part that is in the window shaded. Every row of pixels stands for the same number of lines, as few as
+         still fit them all in, and every pixel across for COLUMNS characters; the more of them aren't spaces,
+         the darker it is. The lines are the ones between newlines, found with the Rope's line index.
+         The picture is cut into tiles of TILE_ROWS rows, each an image of its own, which are worked out on a
+         background thread from a snapshot of the text. An edit only makes the tiles with the lines it changed
+         dirty, unless it adds or takes away lines, which moves every line after it. Each frame only draws
+         the tiles again, and there are never more of them than fit on the Canvas however long the text is.
+         Clicking or dragging on the Minimap scrolls that part of the text into the middle of the window.
+         All Minimaps share the one background thread.
+    */
+
+    public static final int WIDTH = 60;
+    private static final Metrics.Operation MINIMAP = Metrics.operation("minimap");
+    private static final int TILE_ROWS = 16;
+    private static final int COLUMNS = 2; // Characters to a pixel across
+    private static final int MAX_COLUMNS = WIDTH * COLUMNS;
+    private static final int TAB_COLUMNS = 4;
+    private static final double MAX_ROW_HEIGHT = 2; // A short text is drawn bigger, up to this many pixels a line
+    private static final Color BACKGROUND = Color.rgb(245, 245, 245);
+    private static final Color WINDOW = Color.rgb(0, 0, 0, 0.12);
+
+    private static ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "minimap");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Listener hears where the Minimap was clicked. */
+    public interface Listener {
+        /** Called with the y position to scroll the text to. */
+        void jumped(int scrollY);
+    }
+
+    private Canvas canvas = new Canvas(WIDTH, 0);
+    private Listener listener;
+    private AtomicInteger generation = new AtomicInteger(); // Goes up with every edit and every new build
+    // These are only used on the JavaFX thread
+    private LinkedList list; // null if nothing is shown
+    private Rope text = Rope.EMPTY;
+    private int linesPerRow = 1;
+    private int rows;
+    private WritableImage[] tiles = new WritableImage[0];
+    private boolean[] dirty = new boolean[0];
+    private boolean anyDirty;
+    private int running = -1; // The build that is going, which is only still going if it is the generation
+    private boolean redraw;
+    private int drawnScrollY = -1;
+
+    public Minimap(Listener listener) {
+        this.listener = listener;
+        EventHandler<MouseEvent> jump = new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent mouseEvent) {
+                jumpTo(mouseEvent.getY());
+            }
+        };
+        canvas.setOnMousePressed(jump);
+        canvas.setOnMouseDragged(jump);
+    }
+
+    public Canvas node() {
+        return canvas;
+    }
+
+    /** Shows list, or nothing if it is null. */
+    public void setText(LinkedList newList) {
+        if (list != null) {
+            list.setMinimap(null);
+        }
+        list = newList;
+        if (list == null) {
+            generation.incrementAndGet();
+            tiles = new WritableImage[0];
+            dirty = new boolean[0];
+            anyDirty = false;
+            canvas.getGraphicsContext2D().clearRect(0, 0, WIDTH, canvas.getHeight());
+            return;
+        }
+        list.setMinimap(this);
+        reset(list.snapshot());
+    }
+
+    /** Makes the Minimap height pixels tall. */
+    public void setHeight(int height) {
+        canvas.setHeight(height);
+        if (list != null) {
+            reset(text);
+        }
+    }
+
+    /** Makes every tile dirty, for a text that was replaced as a whole. */
+    public void reset(Rope newText) {
+        generation.incrementAndGet();
+        text = newText;
+        linesPerRow = Math.max(1, (int) Math.ceil(text.lineCount() / Math.max(1, canvas.getHeight())));
+        rows = (text.lineCount() + linesPerRow - 1) / linesPerRow;
+        int count = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        if (count != tiles.length) {
+            tiles = Arrays.copyOf(tiles, count);
+            dirty = new boolean[count];
+        }
+        Arrays.fill(dirty, true);
+        anyDirty = true;
+        redraw = true;
+    }
+
+    /**
+     * Makes the tiles dirty that an edit changed, which turned before into after by replacing removed
+     * characters at offset with added ones.
+     */
+    public void edited(Rope before, Rope after, int offset, int removed, int added) {
+        int perRow = Math.max(1, (int) Math.ceil(after.lineCount() / Math.max(1, canvas.getHeight())));
+        if (perRow != linesPerRow) {
+            // Every row stands for a different number of lines now
+            reset(after);
+            return;
+        }
+        generation.incrementAndGet();
+        text = after;
+        int first = after.lineOfOffset(offset);
+        int last = before.lineCount() == after.lineCount() ? after.lineOfOffset(offset + added) : Integer.MAX_VALUE;
+        rows = (after.lineCount() + linesPerRow - 1) / linesPerRow;
+        int count = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        if (count != tiles.length) {
+            tiles = Arrays.copyOf(tiles, count);
+            dirty = Arrays.copyOf(dirty, count);
+        }
+        int lastTile = last == Integer.MAX_VALUE ? count - 1 : last / linesPerRow / TILE_ROWS;
+        for (int tile = first / linesPerRow / TILE_ROWS; tile <= lastTile && tile < count; tile++) {
+            dirty[tile] = true;
+        }
+        anyDirty = true;
+        redraw = true;
+    }
+
+    /**
+     * Starts working out the dirty tiles, unless that is already going, and draws the Minimap again if
+     * anything changed or the text was scrolled. Called once a frame.
+     */
+    public void update() {
+        if (list == null) {
+            return;
+        }
+        if (anyDirty && running != generation.get()) {
+            int[] build = new int[dirty.length];
+            int count = 0;
+            for (int tile = 0; tile < dirty.length; tile++) {
+                if (dirty[tile]) {
+                    dirty[tile] = false;
+                    build[count++] = tile;
+                }
+            }
+            anyDirty = false;
+            running = generation.incrementAndGet();
+            executor.execute(new Build(running, text, linesPerRow, Arrays.copyOf(build, count)));
+        }
+        if (redraw || list.scrollY() != drawnScrollY) {
+            draw();
+        }
+    }
+
+    /** Returns how many pixels tall every row is drawn. */
+    private double rowHeight() {
+        return Math.min(MAX_ROW_HEIGHT, canvas.getHeight() / Math.max(1, rows));
+    }
+
+    /** Draws the tiles that have been worked out, and shades the part of the text that is in the window. */
+    private void draw() {
+        redraw = false;
+        drawnScrollY = list.scrollY();
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.setImageSmoothing(false);
+        graphics.setFill(BACKGROUND);
+        graphics.fillRect(0, 0, WIDTH, canvas.getHeight());
+        double rowHeight = rowHeight();
+        for (int tile = 0; tile < tiles.length; tile++) {
+            if (tiles[tile] != null) {
+                graphics.drawImage(tiles[tile], 0, tile * TILE_ROWS * rowHeight, WIDTH, TILE_ROWS * rowHeight);
+            }
+        }
+        double top = text.lineOfOffset(list.offsetAtY(drawnScrollY));
+        double bottom = text.lineOfOffset(list.offsetAtY(drawnScrollY + (int) canvas.getHeight() - 1)) + 1;
+        graphics.setFill(WINDOW);
+        graphics.fillRect(0, top / linesPerRow * rowHeight, WIDTH,
+                Math.max(2, (bottom - top) / linesPerRow * rowHeight));
+    }
+
+    /** Scrolls the line at y position y on the Minimap into the middle of the window. */
+    private void jumpTo(double y) {
+        if (list == null) {
+            return;
+        }
+        int line = (int) (y / rowHeight()) * linesPerRow;
+        int offset = text.lineStart(Math.max(0, Math.min(line, text.lineCount() - 1)));
+        listener.jumped(list.yOf(offset) - (int) canvas.getHeight() / 2);
+    }
+
+    /**
+     * Takes the pixels worked out for tile by build id, unless there was an edit since, in which case the
+     * tile is worked out again.
+     */
+    private void apply(int id, int tile, int[] pixels) {
+        if (tile >= tiles.length) {
+            return;
+        }
+        if (id != generation.get()) {
+            dirty[tile] = true;
+            anyDirty = true;
+            return;
+        }
+        if (tiles[tile] == null) {
+            tiles[tile] = new WritableImage(WIDTH, TILE_ROWS);
+        }
+        tiles[tile].getPixelWriter().setPixels(0, 0, WIDTH, TILE_ROWS, PixelFormat.getIntArgbInstance(), pixels, 0,
+                WIDTH);
+        redraw = true;
+    }
+
+    /** Gives up on the tiles a build didn't get to, which are worked out again by the next one. */
+    private void cancelled(int id, int[] tilesLeft) {
+        for (int tile : tilesLeft) {
+            if (tile < dirty.length) {
+                dirty[tile] = true;
+                anyDirty = true;
+            }
+        }
+        if (id == running) {
+            running = -1;
+        }
+    }
+
+    /** Build works out the pixels of some tiles on the background thread. */
+    private class Build implements Runnable {
+        private int id;
+        private Rope text;
+        private int linesPerRow;
+        private int[] build;
+        private char[] chars = new char[MAX_COLUMNS];
+        private int[] counts = new int[WIDTH];
+
+        Build(int id, Rope text, int linesPerRow, int[] build) {
+            this.id = id;
+            this.text = text;
+            this.linesPerRow = linesPerRow;
+            this.build = build;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < build.length; i++) {
+                if (generation.get() != id) {
+                    final int[] left = Arrays.copyOfRange(build, i, build.length);
+                    Platform.runLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            cancelled(id, left);
+                        }
+                    });
+                    return;
+                }
+                MINIMAP.start();
+                final int tile = build[i];
+                final int[] pixels = pixels(tile);
+                MINIMAP.stop();
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        apply(id, tile, pixels);
+                    }
+                });
+            }
+            Platform.runLater(new Runnable() {
+                @Override
+                public void run() {
+                    cancelled(id, new int[0]);
+                }
+            });
+        }
+
+        /** Works out the pixels of tile, a row at a time. */
+        private int[] pixels(int tile) {
+            int[] pixels = new int[WIDTH * TILE_ROWS];
+            int lineCount = text.lineCount();
+            for (int row = 0; row < TILE_ROWS; row++) {
+                int first = (tile * TILE_ROWS + row) * linesPerRow;
+                if (first >= lineCount) {
+                    break;
+                }
+                Arrays.fill(counts, 0);
+                for (int line = first; line < first + linesPerRow && line < lineCount; line++) {
+                    count(line);
+                }
+                for (int x = 0; x < WIDTH; x++) {
+                    if (counts[x] > 0) {
+                        int alpha = Math.min(255, 64 + 191 * counts[x] / (COLUMNS * linesPerRow));
+                        pixels[row * WIDTH + x] = alpha << 24 | 0x404040;
+                    }
+                }
+            }
+            return pixels;
+        }
+
+        /** Adds the characters on line that aren't spaces to counts. Only the first MAX_COLUMNS are read. */
+        private void count(int line) {
+            int start = text.lineStart(line);
+            int end = line + 1 < text.lineCount() ? text.lineStart(line + 1) - 1 : text.length();
+            int length = Math.min(end - start, MAX_COLUMNS);
+            text.getChars(start, start + length, chars, 0);
+            int column = 0;
+            for (int i = 0; i < length && column < MAX_COLUMNS; i++) {
+                char c = chars[i];
+                if (c == '\t') {
+                    column += TAB_COLUMNS - column % TAB_COLUMNS;
+                } else {
+                    if (!Character.isWhitespace(c)) {
+                        counts[column / COLUMNS]++;
+                    }
+                    column++;
+                }
+            }
+        }
+    }
+
+}
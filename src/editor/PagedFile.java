@@ -0,0 +1,441 @@
+package editor;
+
+import javafx.application.Platform;
+import javafx.scene.text.Text;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+
+public class PagedFile {
+    /**
+         A PagedFile shows a file that is too big to read in, like a log of many GB, read only. Only a page of
+         about PAGE_BYTES around the scroll position is read and decoded, into a read-only LinkedList, and
+         scrolling further than the page reaches pages in the part of the file there instead. The scroll
+         position is a byte offset, so the whole file can be scrolled through as soon as it is open.
+         In the background the file is read SLICE bytes at a time and its newlines are counted, keeping
+         the offset of every stride-th line. Once there are MAX_INDEX of those, stride doubles and every other
+         one is thrown away, so the index stays the same size however long the file gets. It gives the line
+         numbers shown in the status Text.
+         When following, the file is watched like tail -f: whatever is appended gets indexed, and if the window
+         was at the end of the file it moves to the new end. If the file gets shorter it is indexed again.
+         The file is read into buffers that are reused, never memory-mapped: touching a mapped page past the
+         end of a file that was just cut short kills the JVM, while a read only comes back short.
+    */
+
+    public static final long STEP = 4096; // How far the arrows of the scroll bar move, in bytes
+    private static final long PAGE_BYTES = 256 << 10;
+    private static final long EDGE = PAGE_BYTES / 8; // A new page is paged in when the window gets this close to an edge
+    private static final int SLICE = 1 << 20; // Bytes indexed at a time while holding the lock
+    private static final int MAX_INDEX = 1 << 16;
+    private static final long STATUS_BYTES = 64L << 20; // The status is shown again every time this much is indexed
+    private static final Metrics.Operation PAGE = Metrics.operation("page");
+
+    private Path path;
+    private FileChannel channel;
+    private Charset charset;
+    private long start; // The first byte after the byte order mark
+    private int unit; // Bytes per character of a newline: 2 for UTF-16, 1 otherwise
+    private int newlineByte; // Which byte of a unit holds the 0x0A of a newline
+    private LinkedList text;
+    private Text status;
+    private boolean follow;
+    private ExecutorService indexer;
+    private ByteBuffer indexBytes = ByteBuffer.allocate(SLICE); // Only used on the index thread
+    // These are only used on the JavaFX thread
+    private ByteBuffer pageBytes = ByteBuffer.allocate((int) (2 * PAGE_BYTES)); // Holds the most a page can take
+    private long size;
+    private long pageStart;
+    private long pageEnd; // pageStart == pageEnd until the first page is read
+    private long position = -1; // The byte at the top of the window
+    // The index, only used while holding the lock of this PagedFile
+    private long[] index = new long[MAX_INDEX]; // index[k] is the offset of line k * stride
+    private int indexCount;
+    private long stride = 1;
+    private long lines; // Newlines counted so far
+    private long indexedTo;
+    private int generation; // Goes up when the file got shorter, so the indexing that is going stops
+
+    /** Opens path and shows the end of it if follow is true, or the start otherwise. */
+    public PagedFile(Path path, LinkedList text, Text status, boolean follow) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.text = text;
+        this.status = status;
+        this.follow = follow;
+        FileLoader loader = new FileLoader(path);
+        charset = loader.charset();
+        start = loader.bomLength();
+        loader.close();
+        unit = charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE) ? 2 : 1;
+        newlineByte = charset.equals(StandardCharsets.UTF_16BE) ? 1 : 0;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        text.setReadOnly(true);
+        index[0] = start;
+        indexCount = 1;
+        indexedTo = start;
+        indexer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "index");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        startIndexing();
+        if (follow) {
+            watch();
+        }
+        scrollTo(follow ? size : start);
+    }
+
+    /** Returns how long the file is in bytes, as far as the JavaFX thread knows. */
+    public long size() {
+        return size;
+    }
+
+    /** Returns the byte at the top of the window. */
+    public long position() {
+        return position;
+    }
+
+    /** Returns true if the window is at the end of a file that is being followed. */
+    public boolean isFollowing() {
+        return follow && position >= align(size);
+    }
+
+    /**
+     * Scrolls so that the line with byte offset at the top of the window, or as close to it as the end of the
+     * file lets it be. Pages in the part of the file around offset if the page that is in doesn't reach.
+     */
+    public void scrollTo(long offset) {
+        offset = align(Math.max(start, Math.min(offset, size)));
+        if (offset == position) {
+            return;
+        }
+        position = offset;
+        boolean nearStart = offset < pageStart + EDGE && pageStart > start;
+        boolean nearEnd = offset > pageEnd - EDGE && pageEnd < size;
+        if (pageStart == pageEnd || offset < pageStart || offset > pageEnd || nearStart || nearEnd) {
+            readPage(offset);
+        }
+        int y = offset >= align(size) ? text.lastScrollY() : text.yOf(charsBefore(offset));
+        text.scrollTo(Math.min(y, text.lastScrollY()));
+        updateStatus();
+    }
+
+    /** Reads the page around offset into the text. */
+    private void readPage(long offset) {
+        PAGE.start();
+        try {
+            long from = lineStart(Math.max(start, offset - PAGE_BYTES / 2));
+            long to = lineEnd(Math.min(size, from + PAGE_BYTES));
+            if (to >= size) {
+                // Near the end, the page ends at the end of the file and has a whole page above the window
+                from = lineStart(Math.max(start, size - PAGE_BYTES));
+                to = size;
+            }
+            text.setPage(decode(from, to));
+            pageStart = from;
+            pageEnd = to;
+        } catch (IOException ioException) {
+            System.out.println("Error reading " + path + ".");
+        }
+        PAGE.stop();
+    }
+
+    /** Returns how many characters of the page come before offset. */
+    private int charsBefore(long offset) {
+        try {
+            return decode(pageStart, Math.min(offset, pageEnd)).length();
+        } catch (IOException ioException) {
+            System.out.println("Error reading " + path + ".");
+            return 0;
+        }
+    }
+
+    /** Decodes the bytes in [from, to). Bytes that aren't valid in the charset become U+FFFD. */
+    private String decode(long from, long to) throws IOException {
+        if (to <= from) {
+            return "";
+        }
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(read(from, to, pageBytes)).toString();
+    }
+
+    /**
+     * Reads the bytes in [from, to) into bytes, which has to have room for them, and returns it ready to be
+     * read. If the file ends sooner, which it can if it was cut short, there are fewer.
+     */
+    private ByteBuffer read(long from, long to, ByteBuffer bytes) throws IOException {
+        bytes.clear();
+        bytes.limit((int) (to - from));
+        while (bytes.hasRemaining() && channel.read(bytes, from + bytes.position()) > 0) {
+            // Keep reading until we have all of them or the file ends
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /** Moves offset back to the start of the character it is in, for UTF-16. */
+    private long align(long offset) {
+        return offset - (offset - start) % unit;
+    }
+
+    /** Returns true if there is a newline at byte i of bytes, which has to start a character. */
+    private boolean isNewline(ByteBuffer bytes, int i) {
+        return bytes.get(i + newlineByte) == '\n' && (unit == 1 || bytes.get(i + 1 - newlineByte) == 0);
+    }
+
+    /**
+     * Returns the start of the line offset is on. A line longer than PAGE_BYTES is cut at offset instead of
+     * looking further back for its start.
+     */
+    private long lineStart(long offset) throws IOException {
+        offset = align(offset);
+        long from = Math.max(start, offset - PAGE_BYTES);
+        ByteBuffer bytes = read(from, offset, pageBytes);
+        for (int i = bytes.limit() - bytes.limit() % unit - unit; i >= 0; i -= unit) {
+            if (isNewline(bytes, i)) {
+                return from + i + unit;
+            }
+        }
+        return from == start ? start : offset;
+    }
+
+    /** Returns the start of the line after the one offset is on, cut off like lineStart(). */
+    private long lineEnd(long offset) throws IOException {
+        offset = align(offset);
+        long to = align(Math.min(size, offset + PAGE_BYTES));
+        ByteBuffer bytes = read(offset, to, pageBytes);
+        for (int i = 0; i + unit <= bytes.limit(); i += unit) {
+            if (isNewline(bytes, i)) {
+                return offset + i + unit;
+            }
+        }
+        return to == align(size) ? size : to;
+    }
+
+    /** Counts the newlines of the rest of the file on the index thread. */
+    private void startIndexing() {
+        indexer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    index();
+                } catch (IOException ioException) {
+                    System.out.println("Error indexing " + path + ".");
+                }
+            }
+        });
+    }
+
+    /** Counts the newlines from where the last indexing stopped to the end of the file. */
+    private void index() throws IOException {
+        long from;
+        int id;
+        synchronized (this) {
+            from = indexedTo;
+            id = generation;
+        }
+        long to = align(channel.size());
+        long updated = from;
+        while (from < to) {
+            ByteBuffer slice = read(from, Math.min(to, from + SLICE), indexBytes);
+            int length = slice.limit() - slice.limit() % unit;
+            if (length == 0) {
+                // The file got shorter, and changed() will start over once it hears about it
+                return;
+            }
+            synchronized (this) {
+                if (id != generation) {
+                    // The file got shorter and is being indexed again from the start
+                    return;
+                }
+                for (int i = 0; i < length; i += unit) {
+                    if (isNewline(slice, i)) {
+                        addLine(from + i + unit);
+                    }
+                }
+                indexedTo = from + length;
+            }
+            from += length;
+            if (from - updated < STATUS_BYTES && from < to) {
+                continue;
+            }
+            updated = from;
+            Platform.runLater(new Runnable() {
+                @Override
+                public void run() {
+                    updateStatus();
+                }
+            });
+        }
+    }
+
+    /** Counts a newline, with the next line starting at lineStart. */
+    private void addLine(long lineStart) {
+        lines++;
+        if (lines % stride != 0) {
+            return;
+        }
+        if (indexCount == MAX_INDEX) {
+            // Keep every other line, which are the multiples of twice the stride
+            for (int i = 0; i < MAX_INDEX / 2; i++) {
+                index[i] = index[2 * i];
+            }
+            indexCount = MAX_INDEX / 2;
+            stride *= 2;
+        }
+        if (lines % stride == 0) {
+            index[indexCount++] = lineStart;
+        }
+    }
+
+    /** Returns the number of the line offset is on, counting from 0, or -1 if it hasn't been indexed yet. */
+    private synchronized long lineAt(long offset) {
+        if (offset > indexedTo) {
+            return -1;
+        }
+        int k = Arrays.binarySearch(index, 0, indexCount, offset);
+        if (k < 0) {
+            k = -k - 2;
+        }
+        long line = k * stride;
+        try {
+            // There can be more bytes between two lines of the index than fit in pageBytes
+            for (long from = index[k]; from < offset; from += pageBytes.capacity()) {
+                ByteBuffer bytes = read(from, Math.min(offset, from + pageBytes.capacity()), pageBytes);
+                for (int i = 0; i + unit <= bytes.limit(); i += unit) {
+                    if (isNewline(bytes, i)) {
+                        line++;
+                    }
+                }
+                if (bytes.limit() < Math.min(offset - from, pageBytes.capacity())) {
+                    // The file got shorter
+                    return -1;
+                }
+            }
+        } catch (IOException ioException) {
+            return -1;
+        }
+        return line;
+    }
+
+    /** Shows which line is at the top of the window and how many there are. */
+    private void updateStatus() {
+        long line = lineAt(position);
+        long total;
+        boolean counting;
+        synchronized (this) {
+            total = lines + 1;
+            counting = indexedTo < align(size);
+        }
+        StringBuilder message = new StringBuilder("Read only");
+        if (line >= 0) {
+            message.append(String.format(Locale.ROOT, ", line %,d of %,d", line + 1, total));
+        }
+        if (counting && line >= 0) {
+            message.append("+");
+        } else if (counting) {
+            message.append(String.format(Locale.ROOT, ", %,d lines so far", total));
+        }
+        if (isFollowing()) {
+            message.append(", following");
+        }
+        status.setText(message.toString());
+    }
+
+    /** Watches the directory of the file on a background thread and checks the file whenever it changes. */
+    private void watch() {
+        final WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ioException) {
+            System.out.println("Error watching " + path + ".");
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        WatchKey key = watcher.take();
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (path.getFileName().equals(event.context())) {
+                                Platform.runLater(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        changed();
+                                    }
+                                });
+                            }
+                        }
+                        key.reset();
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException stopped) {
+                    // Nothing left to watch
+                }
+            }
+        }, "follow");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Indexes whatever was appended to the file and moves to the new end if the window was at the old one. */
+    private void changed() {
+        long newSize;
+        try {
+            newSize = channel.size();
+        } catch (IOException ioException) {
+            System.out.println("Error reading " + path + ".");
+            return;
+        }
+        if (newSize == size) {
+            return;
+        }
+        boolean atEnd = position >= align(size);
+        if (newSize < size) {
+            // The file was cut short, so the index and the page are no good any more
+            synchronized (this) {
+                generation++;
+                indexCount = 1;
+                stride = 1;
+                lines = 0;
+                indexedTo = start;
+            }
+            pageStart = 0;
+            pageEnd = 0;
+            position = -1;
+        }
+        long oldPosition = position;
+        size = newSize;
+        startIndexing();
+        if (atEnd || oldPosition < 0) {
+            scrollTo(atEnd ? size : start);
+        } else {
+            updateStatus();
+        }
+    }
+
+}
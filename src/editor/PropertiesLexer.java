@@ -0,0 +1,67 @@
+package editor;
+
+
+public class PropertiesLexer implements Lexer {
+    /**
+         PropertiesLexer finds the comments, keys and values of a .properties file. A value goes on to the next
+         line when its line ends in an odd number of backslashes, which is what the state says.
+    */
+
+    private static final int KEY = 0;
+    private static final int VALUE = 1; // The line goes on with the value from the line before
+
+    @Override
+    public int lex(char[] line, int length, int state, Tokens tokens) {
+        int i = skipSpaces(line, length, 0);
+        if (state == VALUE) {
+            emit(tokens, i, length, TokenStyle.STRING);
+            return continues(line, length) ? VALUE : KEY;
+        }
+        if (i == length) {
+            return KEY;
+        }
+        if (line[i] == '#' || line[i] == '!') {
+            // Comments never go on to the next line
+            emit(tokens, i, length, TokenStyle.COMMENT);
+            return KEY;
+        }
+        int keyStart = i;
+        while (i < length && line[i] != '=' && line[i] != ':' && !Character.isWhitespace(line[i])) {
+            if (line[i] == '\\') {
+                i++;
+            }
+            i++;
+        }
+        i = Math.min(i, length);
+        emit(tokens, keyStart, i, TokenStyle.KEY);
+        i = skipSpaces(line, length, i);
+        if (i < length && (line[i] == '=' || line[i] == ':')) {
+            i = skipSpaces(line, length, i + 1);
+        }
+        emit(tokens, i, length, TokenStyle.STRING);
+        return continues(line, length) ? VALUE : KEY;
+    }
+
+    private static int skipSpaces(char[] line, int length, int from) {
+        while (from < length && Character.isWhitespace(line[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    /** Returns true if the line ends in an odd number of backslashes. */
+    private static boolean continues(char[] line, int length) {
+        int backslashes = 0;
+        while (backslashes < length && line[length - 1 - backslashes] == '\\') {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static void emit(Lexer.Tokens tokens, int start, int end, TokenStyle style) {
+        if (tokens != null && start < end) {
+            tokens.token(start, end, style);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package editor;
+
+import javafx.scene.text.Font;
+
+
+public interface Renderer {
+    /**
+         A Renderer draws the lines of a LinkedList that are inside the window. The ViewportRenderer does it
+         with a pool of Text nodes and the CanvasRenderer paints them onto Canvases; both only ever draw the
+         lines the window can show. Lines are the wrapped lines, and y positions count from the top of the text.
+    */
+
+    /** Sets the font every line is drawn in. All the lines have to be drawn again. */
+    void setFont(Font font, int lineHeight);
+
+    /** Changes how much of the text fits in the window. */
+    void setWindowSize(int width, int height);
+
+    /** Throws away every node. setWindowSize() makes them again. */
+    void release();
+
+    /** Changes which part of the text is in the window. */
+    void setScroll(int scrollY);
+
+    int scrollY();
+
+    /** Returns the first line in the window. */
+    int firstLine();
+
+    /** Marks the characters of lines [from, to) as changed. */
+    void invalidate(int from, int to);
+
+    /** Draws the lines in the window that changed or just came into it. */
+    void update();
+
+    /** Sets the search matches to highlight, or null for none. */
+    void setMatches(Matches matches);
+
+    /** Draws the matches, the selections and the cursors besides the main one again. */
+    void updateHighlights();
+
+}
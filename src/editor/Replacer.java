@@ -0,0 +1,421 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+public class Replacer {
+    /**
+         Replacer finds every match in the whole text and replaces them all at once, using every core.
+         The text is cut into chunks and each chunk is searched on the common ForkJoinPool. Matches are found
+         from left to right and can't overlap, so a match that runs over the end of a chunk decides where the
+         search in the next chunk really starts. Finding the next match only depends on where you start looking,
+         so once the next chunk's own matches are joined up with the real ones they stay the same, and the
+         chunks are stitched together by searching again from the end of the last match until that happens,
+         which is usually right away.
+         The new text is built the same way, a chunk's worth of matches per task. Long stretches without a match
+         are not copied: they are slices of the old Rope, which share its leaves.
+         A regular expression only looks WINDOW characters past the end of its chunk at first, and twice as far
+         every time a match that starts in the chunk might have gone on past where it looked, until it reaches
+         the end of the text. That includes a match that is only there with the extra characters.
+    */
+
+    private static final int MIN_CHUNK = 1 << 16;
+    private static final int WINDOW = 1 << 16;
+    private static final int SLICE_AT = 4096; // Stretches without a match at least this long are sliced, not copied
+
+    private Rope text;
+    private String query;
+    private Pattern pattern;
+    private int chunkSize;
+
+    private Replacer(Rope text, String query, boolean regex) {
+        this.text = text;
+        this.query = query;
+        this.pattern = regex ? Pattern.compile(query, Pattern.MULTILINE) : null;
+        int chunks = ForkJoinPool.getCommonPoolParallelism() * 4;
+        chunkSize = Math.max(MIN_CHUNK, text.length() / chunks + 1);
+    }
+
+    /**
+     * Returns every match of query in text, which is version of the text. Throws PatternSyntaxException if
+     * regex is true and query is not a valid regular expression.
+     */
+    public static Matches findAll(Rope text, long version, String query, boolean regex) {
+        return new Replacer(text, query, regex).findAll(version);
+    }
+
+    /**
+     * Returns text with every match in matches replaced, where matches are the matches of query in text. For a
+     * regular expression, $1 or ${name} in replacement stands for what a group matched, and a backslash makes
+     * the next character count as itself. Throws IllegalArgumentException if replacement refers to a group
+     * that isn't there.
+     */
+    public static Rope replace(Rope text, Matches matches, String query, boolean regex, String replacement) {
+        return new Replacer(text, query, regex).replace(matches, replacement);
+    }
+
+    private int chunkCount() {
+        return Math.max(1, (text.length() + chunkSize - 1) / chunkSize);
+    }
+
+    private int chunkEnd(int position) {
+        return Math.min(text.length(), (position / chunkSize + 1) * chunkSize);
+    }
+
+    private Finder finder() {
+        return pattern != null ? new PatternFinder() : new StringFinder();
+    }
+
+    private Matches findAll(long version) {
+        Matches matches = new Matches(version);
+        if (query.isEmpty()) {
+            matches.finish();
+            return matches;
+        }
+        List<FindChunk> tasks = new ArrayList<FindChunk>();
+        for (int i = 0; i < chunkCount(); i++) {
+            tasks.add(new FindChunk(i * chunkSize));
+        }
+        ForkJoinPool.commonPool().invoke(new RunAll<FindChunk>(tasks));
+        // Stitches the chunks together, in order
+        Finder finder = finder();
+        int position = 0;
+        for (FindChunk chunk : tasks) {
+            if (position > chunk.start) {
+                // The last match ran into this chunk, so look again from its end until we meet one of this
+                // chunk's own matches
+                int end = chunkEnd(chunk.start);
+                while (position < end) {
+                    if (!finder.next(position)) {
+                        position = end;
+                        break;
+                    }
+                    int index = chunk.indexOf(finder.start);
+                    if (index >= 0) {
+                        matches.add(chunk.starts.subArray(index), chunk.ends.subArray(index), chunk.size - index);
+                        position = chunk.position;
+                        break;
+                    }
+                    matches.add(new int[] {finder.start}, new int[] {finder.end}, 1);
+                    position = finder.end;
+                }
+            } else {
+                matches.add(chunk.starts.array(), chunk.ends.array(), chunk.size);
+                position = chunk.position;
+            }
+        }
+        matches.finish();
+        return matches;
+    }
+
+    private Rope replace(Matches matches, String replacement) {
+        if (matches.size() == 0) {
+            return text;
+        }
+        // Each task gets the matches that start in one chunk
+        List<BuildChunk> tasks = new ArrayList<BuildChunk>();
+        int from = 0;
+        for (int i = 0; i < chunkCount() && from < matches.size(); i++) {
+            int to = matches.firstStartingAt((i + 1) * chunkSize);
+            if (to > from) {
+                tasks.add(new BuildChunk(matches, from, to, replacement));
+            }
+            from = to;
+        }
+        ForkJoinPool.commonPool().invoke(new RunAll<BuildChunk>(tasks));
+        Rope result = Rope.EMPTY;
+        for (BuildChunk task : tasks) {
+            result = result.concat(task.result);
+        }
+        int last = matches.end(matches.size() - 1);
+        return result.concat(text.subSequence(last, text.length()));
+    }
+
+    /** RunAll forks all of its tasks and waits for them. */
+    private static class RunAll<T extends RecursiveTask<?>> extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private List<T> tasks;
+
+        RunAll(List<T> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected Void compute() {
+            invokeAll(tasks);
+            return null;
+        }
+    }
+
+    /** FindChunk finds the matches that start in one chunk, as if no match ran into it from the chunk before. */
+    private class FindChunk extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        int start;
+        IntArray starts = new IntArray();
+        IntArray ends = new IntArray();
+        int size;
+        int position; // Where looking for the next match starts after the last match in this chunk
+
+        FindChunk(int start) {
+            this.start = start;
+        }
+
+        @Override
+        protected Void compute() {
+            Finder finder = finder();
+            int end = chunkEnd(start);
+            position = start;
+            while (position < end && finder.next(position)) {
+                starts.add(finder.start);
+                ends.add(finder.end);
+                size++;
+                position = finder.end;
+            }
+            position = Math.max(position, end);
+            return null;
+        }
+
+        /** Returns the index of the match that starts at offset, or -1 if there is none. */
+        int indexOf(int offset) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midStart = starts.get(mid);
+                if (midStart < offset) {
+                    low = mid + 1;
+                } else if (midStart > offset) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** BuildChunk builds the new text from the end of the match before first up to match last - 1. */
+    private class BuildChunk extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private Matches matches;
+        private int first;
+        private int last;
+        private String replacement;
+        Rope result;
+
+        BuildChunk(Matches matches, int first, int last, String replacement) {
+            this.matches = matches;
+            this.first = first;
+            this.last = last;
+            this.replacement = replacement;
+        }
+
+        @Override
+        protected Void compute() {
+            Finder finder = pattern != null ? finder() : null;
+            result = Rope.EMPTY;
+            StringBuilder pending = new StringBuilder();
+            char[] buffer = new char[SLICE_AT];
+            int position = first > 0 ? matches.end(first - 1) : 0;
+            for (int i = first; i < last; i++) {
+                int start = matches.start(i);
+                if (start - position >= SLICE_AT) {
+                    result = result.concat(Rope.of(pending)).concat(text.subSequence(position, start));
+                    pending.setLength(0);
+                } else {
+                    text.getChars(position, start, buffer, 0);
+                    pending.append(buffer, 0, start - position);
+                }
+                if (finder != null) {
+                    // Find the match again so its groups can go into the replacement
+                    finder.next(start);
+                    expand(((PatternFinder) finder).matcher, replacement, pending);
+                } else {
+                    pending.append(replacement);
+                }
+                position = matches.end(i);
+            }
+            result = result.concat(Rope.of(pending));
+            return null;
+        }
+    }
+
+    /** Appends replacement to out, with $n and ${name} replaced by what those groups of matcher matched. */
+    private static void expand(Matcher matcher, String replacement, StringBuilder out) {
+        int i = 0;
+        while (i < replacement.length()) {
+            char c = replacement.charAt(i++);
+            if (c == '\\' && i < replacement.length()) {
+                out.append(replacement.charAt(i++));
+            } else if (c == '$' && i < replacement.length() && replacement.charAt(i) == '{') {
+                int close = replacement.indexOf('}', i);
+                if (close < 0) {
+                    throw new IllegalArgumentException("named group is missing a }");
+                }
+                String group = matcher.group(replacement.substring(i + 1, close));
+                out.append(group != null ? group : "");
+                i = close + 1;
+            } else if (c == '$' && i < replacement.length() && Character.isDigit(replacement.charAt(i))) {
+                // Take as many digits as still make a group that exists
+                int group = replacement.charAt(i++) - '0';
+                while (i < replacement.length() && Character.isDigit(replacement.charAt(i))
+                        && group * 10 + replacement.charAt(i) - '0' <= matcher.groupCount()) {
+                    group = group * 10 + replacement.charAt(i++) - '0';
+                }
+                if (group > matcher.groupCount()) {
+                    throw new IllegalArgumentException("no group " + group);
+                }
+                String value = matcher.group(group);
+                out.append(value != null ? value : "");
+            } else if (c == '$') {
+                throw new IllegalArgumentException("$ has to be followed by a group");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+         A Finder finds the first match that starts at or after a position and before the end of that position's
+         chunk. What it finds only depends on the position, which is what lets the chunks be stitched together.
+    */
+    private abstract class Finder {
+        int start;
+        int end;
+
+        /** Looks for the next match from position. Returns false if there is none before the end of the chunk. */
+        abstract boolean next(int position);
+    }
+
+    /** StringFinder looks for query as it is. It reads the text a chunk at a time and keeps the chunk around. */
+    private class StringFinder extends Finder {
+        private char[] block = new char[0];
+        private int blockStart;
+        private int blockEnd;
+
+        @Override
+        boolean next(int position) {
+            int length = query.length();
+            int limit = Math.min(chunkEnd(position), text.length() - length + 1);
+            if (position >= limit) {
+                return false;
+            }
+            int readEnd = limit + length - 1;
+            if (position < blockStart || readEnd > blockEnd) {
+                if (block.length < readEnd - position) {
+                    block = new char[Math.max(readEnd - position, chunkSize + length)];
+                }
+                text.getChars(position, readEnd, block, 0);
+                blockStart = position;
+                blockEnd = readEnd;
+            }
+            char first = query.charAt(0);
+            for (int p = position; p < limit; p++) {
+                if (block[p - blockStart] == first && matchesAt(p - blockStart)) {
+                    start = p;
+                    end = p + length;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesAt(int i) {
+            for (int j = 1; j < query.length(); j++) {
+                if (block[i + j] != query.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** PatternFinder looks for the regular expression. Matches that don't match any characters are skipped. */
+    private class PatternFinder extends Finder {
+        Matcher matcher = pattern.matcher(new Searcher.Chunks(text));
+        Matcher inChunk; // Only tries matches that start in one chunk, made the first time it is needed
+
+        PatternFinder() {
+            matcher.useTransparentBounds(true);
+            matcher.useAnchoringBounds(false);
+        }
+
+        @Override
+        boolean next(int position) {
+            int limit = chunkEnd(position);
+            int window = WINDOW;
+            while (position < limit) {
+                int regionEnd = (int) Math.min(text.length(), (long) limit + window);
+                matcher.region(position, regionEnd);
+                boolean found = matcher.find() && matcher.start() < limit;
+                if (regionEnd < text.length() && (found ? matcher.hitEnd() : cutShort(limit, regionEnd))) {
+                    // The match might go on further than we let it look, so look again further
+                    window *= 2;
+                } else if (!found) {
+                    return false;
+                } else if (matcher.end() == matcher.start()) {
+                    position = matcher.start() + 1;
+                } else {
+                    start = matcher.start();
+                    end = matcher.end();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns true if a match starting in the chunk that ends at limit could have run on past regionEnd.
+         * find() can't say, since it also tries every start after limit, and the ones just before regionEnd
+         * always run into it. So the expression is tried once more, after skipping a lazy run of characters
+         * that stops before limit, and only those tries count.
+         */
+        private boolean cutShort(int limit, int regionEnd) {
+            if (inChunk == null) {
+                String skip = "[\\s\\S]{0," + (chunkSize - 1) + "}?";
+                inChunk = Pattern.compile(skip + "(?:" + query + ")", Pattern.MULTILINE)
+                        .matcher(new Searcher.Chunks(text));
+                inChunk.useTransparentBounds(true);
+                inChunk.useAnchoringBounds(false);
+            }
+            inChunk.region(Math.max(0, limit - chunkSize), regionEnd);
+            inChunk.lookingAt();
+            return inChunk.hitEnd();
+        }
+    }
+
+    /** IntArray is a list of ints that grows as it needs to. */
+    private static class IntArray {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int[] array() {
+            return values;
+        }
+
+        int[] subArray(int from) {
+            return Arrays.copyOfRange(values, from, size);
+        }
+    }
+
+}
@@ -0,0 +1,643 @@
+package editor;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class Rope implements CharSequence {
+    /**
+         A Rope is an immutable sequence of characters stored as a balanced binary tree.
+         The characters themselves live in the leaves, at most MAX_LEAF characters each. A leaf whose characters
+         are all Latin-1 (below 256, like nearly all of most source files and logs) keeps them in a byte array,
+         and any other leaf in a char array, so a document costs roughly one byte per character where it can and
+         two where it has to, no matter how many characters it has. Leaves are made again on every edit, so one
+         that loses its last wide character shrinks back to bytes.
+         Every node remembers how many characters and how many newlines are below it. That lets us find an offset,
+         the line an offset is on, or the offset a line starts at by walking one path from the root, which is
+         O(log n) because the tree is kept height-balanced (like an AVL tree).
+         Editing never changes a Rope. insert and delete return a new Rope that shares every untouched subtree
+         with the old one, so keeping an old version around is cheap.
+         Every node can also say which characters might be below it, as a 63 bit mask (see charMask). It is only
+         worked out the first time someone asks, and since nodes never change and are shared between versions,
+         searching the text again after an edit only has to look at the nodes the edit made.
+    */
+
+    private static final int MAX_LEAF = 1024;
+    private static final long MASK_KNOWN = 1L << 63; // Set in every mask that has been worked out
+
+    public static final Rope EMPTY = new Rope(Leaf.of(new char[0]));
+
+    private final Node root;
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    /** Node is each element of the tree. */
+    private abstract static class Node {
+        int length;
+        int newlines;
+        int height;
+        volatile long mask; // 0 until someone asks for it, then charMask of the characters below | MASK_KNOWN
+    }
+
+    /**
+         Leaf holds the actual characters, in bytes if they are all Latin-1 and in chars if not. It is a
+         CharSequence so a Latin-1 leaf can be read as chars without copying it.
+    */
+    private static final class Leaf extends Node implements CharSequence {
+        final byte[] bytes; // null if the characters are in chars
+        final char[] chars; // null if the characters are in bytes
+
+        private Leaf(byte[] bytes, char[] chars) {
+            this.bytes = bytes;
+            this.chars = chars;
+            length = bytes != null ? bytes.length : chars.length;
+            height = 0;
+            for (int i = 0; i < length; i++) {
+                if (charAt(i) == '\n') {
+                    newlines++;
+                }
+            }
+        }
+
+        /** Makes a Leaf holding chars, in bytes if every one of them fits. chars is kept if they don't. */
+        static Leaf of(char[] chars) {
+            for (char c : chars) {
+                if (c > 0xFF) {
+                    return new Leaf(null, chars);
+                }
+            }
+            byte[] bytes = new byte[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                bytes[i] = (byte) chars[i];
+            }
+            return new Leaf(bytes, null);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return bytes != null ? (char) (bytes[index] & 0xFF) : chars[index];
+        }
+
+        /** Copies the characters in [start, end) into dst starting at dstBegin. */
+        void getChars(int start, int end, char[] dst, int dstBegin) {
+            if (chars != null) {
+                System.arraycopy(chars, start, dst, dstBegin, end - start);
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                dst[dstBegin++] = (char) (bytes[i] & 0xFF);
+            }
+        }
+
+        /** Returns a Leaf holding the characters in [start, end). */
+        Leaf slice(int start, int end) {
+            if (bytes != null) {
+                return new Leaf(Arrays.copyOfRange(bytes, start, end), null);
+            }
+            return of(Arrays.copyOfRange(chars, start, end));
+        }
+
+        @Override
+        public String subSequence(int start, int end) {
+            if (bytes != null) {
+                return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+            }
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length);
+        }
+    }
+
+    /** Branch holds the characters of left followed by the characters of right. */
+    private static final class Branch extends Node {
+        final Node left;
+        final Node right;
+
+        Branch(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+            length = left.length + right.length;
+            newlines = left.newlines + right.newlines;
+            height = Math.max(left.height, right.height) + 1;
+        }
+    }
+
+    /** Makes a Rope holding the characters of text. */
+    public static Rope of(CharSequence text) {
+        if (text instanceof Rope) {
+            return (Rope) text;
+        }
+        if (text.length() == 0) {
+            return EMPTY;
+        }
+        int leafCount = (text.length() + MAX_LEAF - 1) / MAX_LEAF;
+        Node[] leaves = new Node[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            int from = i * MAX_LEAF;
+            int to = Math.min(from + MAX_LEAF, text.length());
+            leaves[i] = Leaf.of(toChars(text, from, to));
+        }
+        return new Rope(build(leaves, 0, leafCount));
+    }
+
+    /** Builds a perfectly balanced tree out of nodes[from, to). */
+    private static Node build(Node[] nodes, int from, int to) {
+        if (to - from == 1) {
+            return nodes[from];
+        }
+        int mid = (from + to) >>> 1;
+        return new Branch(build(nodes, from, mid), build(nodes, mid, to));
+    }
+
+    @Override
+    public int length() {
+        return root.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        checkIndex(index, length());
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < branch.left.length) {
+                node = branch.left;
+            } else {
+                index -= branch.left.length;
+                node = branch.right;
+            }
+        }
+        return ((Leaf) node).charAt(index);
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+        checkRange(start, end, length());
+        if (start == 0 && end == length()) {
+            return this;
+        }
+        return new Rope(slice(root, start, end));
+    }
+
+    /** Returns the characters in [start, end) as a String. */
+    public String substring(int start, int end) {
+        checkRange(start, end, length());
+        char[] chars = new char[end - start];
+        getChars(start, end, chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    /** Returns a new Rope with text inserted so that it starts at offset. */
+    public Rope insert(int offset, CharSequence text) {
+        checkIndex(offset, length() + 1);
+        if (text.length() == 0) {
+            return this;
+        }
+        if (text.length() > MAX_LEAF) {
+            // Big inserts are built as their own balanced tree and joined in
+            Node inserted = of(text).root;
+            return new Rope(join(join(slice(root, 0, offset), inserted), slice(root, offset, length())));
+        }
+        return new Rope(insert(root, offset, toChars(text, 0, text.length())));
+    }
+
+    /** Returns a new Rope with the characters of other after the characters of this one. */
+    public Rope concat(Rope other) {
+        return new Rope(join(root, other.root));
+    }
+
+    /** Returns a new Rope with the characters in [start, end) removed. */
+    public Rope delete(int start, int end) {
+        checkRange(start, end, length());
+        if (start == end) {
+            return this;
+        }
+        return new Rope(join(slice(root, 0, start), slice(root, end, length())));
+    }
+
+    /** Returns the number of lines, which is one more than the number of newline characters. */
+    public int lineCount() {
+        return root.newlines + 1;
+    }
+
+    /** Returns the line that offset is on, counting from 0 (the number of newlines before offset). */
+    public int lineOfOffset(int offset) {
+        checkIndex(offset, length() + 1);
+        int line = 0;
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (offset < branch.left.length) {
+                node = branch.left;
+            } else {
+                offset -= branch.left.length;
+                line += branch.left.newlines;
+                node = branch.right;
+            }
+        }
+        Leaf leaf = (Leaf) node;
+        for (int i = 0; i < offset; i++) {
+            if (leaf.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /** Returns the offset of the first character of the line, counting lines from 0. */
+    public int lineStart(int line) {
+        if (line < 0 || line > root.newlines) {
+            throw new IndexOutOfBoundsException("line " + line + " of " + lineCount());
+        }
+        if (line == 0) {
+            return 0;
+        }
+        // Find the line-th newline, the line starts right after it
+        int offset = 0;
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (line <= branch.left.newlines) {
+                node = branch.left;
+            } else {
+                line -= branch.left.newlines;
+                offset += branch.left.length;
+                node = branch.right;
+            }
+        }
+        Leaf leaf = (Leaf) node;
+        for (int i = 0; i < leaf.length; i++) {
+            if (leaf.charAt(i) == '\n' && --line == 0) {
+                return offset + i + 1;
+            }
+        }
+        throw new IllegalStateException("newline count out of sync");
+    }
+
+    /** Copies the characters in [start, end) into dst starting at dstBegin. */
+    public void getChars(int start, int end, char[] dst, int dstBegin) {
+        checkRange(start, end, length());
+        getChars(root, start, end, dst, dstBegin);
+    }
+
+    private static void getChars(Node node, int start, int end, char[] dst, int dstBegin) {
+        if (start >= end) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            ((Leaf) node).getChars(start, end, dst, dstBegin);
+            return;
+        }
+        Branch branch = (Branch) node;
+        int split = branch.left.length;
+        if (start < split) {
+            getChars(branch.left, start, Math.min(end, split), dst, dstBegin);
+        }
+        if (end > split) {
+            int from = Math.max(start, split);
+            getChars(branch.right, from - split, end - split, dst, dstBegin + from - start);
+        }
+    }
+
+    /** Returns how many characters at the start of this Rope and other are the same. */
+    public int commonPrefix(Rope other) {
+        int limit = Math.min(length(), other.length());
+        if (root == other.root) {
+            return limit;
+        }
+        char[] mine = new char[MAX_LEAF];
+        char[] theirs = new char[MAX_LEAF];
+        for (int from = 0; from < limit; from += MAX_LEAF) {
+            int to = Math.min(limit, from + MAX_LEAF);
+            getChars(from, to, mine, 0);
+            other.getChars(from, to, theirs, 0);
+            for (int i = 0; i < to - from; i++) {
+                if (mine[i] != theirs[i]) {
+                    return from + i;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /** Returns how many characters at the end of this Rope and other are the same, up to limit of them. */
+    public int commonSuffix(Rope other, int limit) {
+        limit = Math.min(limit, Math.min(length(), other.length()));
+        char[] mine = new char[MAX_LEAF];
+        char[] theirs = new char[MAX_LEAF];
+        for (int count = 0; count < limit; count += MAX_LEAF) {
+            int block = Math.min(MAX_LEAF, limit - count);
+            getChars(length() - count - block, length() - count, mine, 0);
+            other.getChars(other.length() - count - block, other.length() - count, theirs, 0);
+            for (int i = block - 1; i >= 0; i--) {
+                if (mine[i] != theirs[i]) {
+                    return count + block - 1 - i;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /** Returns every leaf in order, each wrapped in a read-only CharBuffer. Latin-1 leaves are not copied. */
+    public List<CharBuffer> chunks() {
+        List<CharBuffer> chunks = new ArrayList<CharBuffer>();
+        addChunks(root, chunks);
+        return chunks;
+    }
+
+    private static void addChunks(Node node, List<CharBuffer> chunks) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            if (leaf.length > 0) {
+                chunks.add(leaf.chars != null ? CharBuffer.wrap(leaf.chars).asReadOnlyBuffer() : CharBuffer.wrap(leaf));
+            }
+        } else {
+            addChunks(((Branch) node).left, chunks);
+            addChunks(((Branch) node).right, chunks);
+        }
+    }
+
+    /**
+     * Returns a mask with one bit for every character in text. Different characters can share a bit, so the
+     * mask can only tell for sure that a character is not there.
+     */
+    public static long charMask(CharSequence text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            mask |= bit(text.charAt(i));
+        }
+        return mask;
+    }
+
+    private static long bit(char c) {
+        return 1L << (c % 63);
+    }
+
+    /**
+     * Returns the parts of the text that can't hold every character in required, as start, end pairs in order.
+     * A match of a string with that charMask can't be entirely inside one part, but it can still start near
+     * the end of a part and run on into the next one.
+     */
+    public int[] spansWithout(long required) {
+        int[] spans = new int[16];
+        int count = 0;
+        // Goes through the tree left to right, only going down into nodes that might have every character
+        ArrayDeque<Node> nodes = new ArrayDeque<Node>();
+        nodes.push(root);
+        int start = 0;
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            if ((mask(node) & required) != required) {
+                if (count == spans.length) {
+                    spans = Arrays.copyOf(spans, count * 2);
+                }
+                spans[count++] = start;
+                spans[count++] = start + node.length;
+                start += node.length;
+            } else if (node instanceof Branch) {
+                nodes.push(((Branch) node).right);
+                nodes.push(((Branch) node).left);
+            } else {
+                start += node.length;
+            }
+        }
+        return Arrays.copyOf(spans, count);
+    }
+
+    /** Returns the mask of node, working it out (and the masks below it) if nobody has asked for it yet. */
+    private static long mask(Node node) {
+        long mask = node.mask;
+        if (mask == 0) {
+            if (node instanceof Leaf) {
+                Leaf leaf = (Leaf) node;
+                for (int i = 0; i < leaf.length; i++) {
+                    mask |= bit(leaf.charAt(i));
+                }
+            } else {
+                mask = mask(((Branch) node).left) | mask(((Branch) node).right);
+            }
+            mask |= MASK_KNOWN;
+            node.mask = mask;
+        }
+        return mask & ~MASK_KNOWN;
+    }
+
+    /** Returns a CharIterator that starts at offset. */
+    public CharIterator iterator(int offset) {
+        checkIndex(offset, length() + 1);
+        return new CharIterator(offset);
+    }
+
+    /**
+         CharIterator reads the Rope in order without walking down from the root for every character.
+         It only goes back to the root when it runs off the end of the leaf it is in.
+    */
+    public final class CharIterator {
+        private Leaf leaf;
+        private int leafStart;
+        private int offset;
+
+        private CharIterator(int offset) {
+            this.offset = offset;
+        }
+
+        /** Returns the offset of the character next() will return. */
+        public int offset() {
+            return offset;
+        }
+
+        public boolean hasNext() {
+            return offset < length();
+        }
+
+        public char next() {
+            if (leaf == null || offset < leafStart || offset - leafStart >= leaf.length) {
+                findLeaf();
+            }
+            char c = leaf.charAt(offset - leafStart);
+            offset++;
+            return c;
+        }
+
+        /** Returns the code point at the offset and moves past it, which is two chars for a surrogate pair. */
+        public int nextCodePoint() {
+            char c = next();
+            if (Character.isHighSurrogate(c) && hasNext()) {
+                char low = next();
+                if (Character.isLowSurrogate(low)) {
+                    return Character.toCodePoint(c, low);
+                }
+                offset--;
+            }
+            return c;
+        }
+
+        /** Points leaf and leafStart at the leaf that holds offset. */
+        private void findLeaf() {
+            checkIndex(offset, length());
+            int index = offset;
+            Node node = root;
+            while (node instanceof Branch) {
+                Branch branch = (Branch) node;
+                if (index < branch.left.length) {
+                    node = branch.left;
+                } else {
+                    index -= branch.left.length;
+                    node = branch.right;
+                }
+            }
+            leaf = (Leaf) node;
+            leafStart = offset - index;
+        }
+    }
+
+    /** Returns node with chars inserted at offset, splitting the leaf it lands in if it gets too big. */
+    private static Node insert(Node node, int offset, char[] chars) {
+        if (node instanceof Leaf) {
+            Leaf old = (Leaf) node;
+            char[] merged = new char[old.length + chars.length];
+            old.getChars(0, offset, merged, 0);
+            System.arraycopy(chars, 0, merged, offset, chars.length);
+            old.getChars(offset, old.length, merged, offset + chars.length);
+            if (merged.length <= MAX_LEAF) {
+                return Leaf.of(merged);
+            }
+            int half = merged.length / 2;
+            return new Branch(Leaf.of(copy(merged, 0, half)), Leaf.of(copy(merged, half, merged.length)));
+        }
+        Branch branch = (Branch) node;
+        if (offset <= branch.left.length) {
+            return join(insert(branch.left, offset, chars), branch.right);
+        }
+        return join(branch.left, insert(branch.right, offset - branch.left.length, chars));
+    }
+
+    /** Returns a node holding the characters of node in [start, end). */
+    private static Node slice(Node node, int start, int end) {
+        if (start == 0 && end == node.length) {
+            return node;
+        }
+        if (node instanceof Leaf) {
+            return ((Leaf) node).slice(start, end);
+        }
+        Branch branch = (Branch) node;
+        int split = branch.left.length;
+        if (end <= split) {
+            return slice(branch.left, start, end);
+        }
+        if (start >= split) {
+            return slice(branch.right, start - split, end - split);
+        }
+        return join(slice(branch.left, start, split), slice(branch.right, 0, end - split));
+    }
+
+    /** Concatenates two trees, keeping the result balanced. */
+    private static Node join(Node left, Node right) {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+        if (left instanceof Leaf && right instanceof Leaf && left.length + right.length <= MAX_LEAF) {
+            // Two small neighbours become one leaf so repeated edits don't leave lots of tiny leaves behind
+            Leaf a = (Leaf) left;
+            Leaf b = (Leaf) right;
+            if (a.bytes != null && b.bytes != null) {
+                byte[] merged = Arrays.copyOf(a.bytes, a.length + b.length);
+                System.arraycopy(b.bytes, 0, merged, a.length, b.length);
+                return new Leaf(merged, null);
+            }
+            char[] merged = new char[a.length + b.length];
+            a.getChars(0, a.length, merged, 0);
+            b.getChars(0, b.length, merged, a.length);
+            return Leaf.of(merged);
+        }
+        if (left.height > right.height + 1) {
+            return joinRight((Branch) left, right);
+        }
+        if (right.height > left.height + 1) {
+            return joinLeft(left, (Branch) right);
+        }
+        return new Branch(left, right);
+    }
+
+    /** Joins right onto the right spine of the taller tree left. */
+    private static Node joinRight(Branch left, Node right) {
+        Node middle = join(left.right, right);
+        if (middle.height <= left.left.height + 1) {
+            return new Branch(left.left, middle);
+        }
+        // middle is two taller than left.left, so rotate to keep the tree balanced
+        Branch tall = (Branch) middle;
+        if (tall.left.height > tall.right.height) {
+            Branch inner = (Branch) tall.left;
+            return new Branch(new Branch(left.left, inner.left), new Branch(inner.right, tall.right));
+        }
+        return new Branch(new Branch(left.left, tall.left), tall.right);
+    }
+
+    /** Joins left onto the left spine of the taller tree right. */
+    private static Node joinLeft(Node left, Branch right) {
+        Node middle = join(left, right.left);
+        if (middle.height <= right.right.height + 1) {
+            return new Branch(middle, right.right);
+        }
+        Branch tall = (Branch) middle;
+        if (tall.right.height > tall.left.height) {
+            Branch inner = (Branch) tall.right;
+            return new Branch(new Branch(tall.left, inner.left), new Branch(inner.right, right.right));
+        }
+        return new Branch(tall.left, new Branch(tall.right, right.right));
+    }
+
+    private static char[] toChars(CharSequence text, int from, int to) {
+        char[] chars = new char[to - from];
+        if (text instanceof String) {
+            ((String) text).getChars(from, to, chars, 0);
+        } else if (text instanceof Rope) {
+            ((Rope) text).getChars(from, to, chars, 0);
+        } else {
+            for (int i = from; i < to; i++) {
+                chars[i - from] = text.charAt(i);
+            }
+        }
+        return chars;
+    }
+
+    private static char[] copy(char[] chars, int from, int to) {
+        char[] result = new char[to - from];
+        System.arraycopy(chars, from, result, 0, to - from);
+        return result;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + size);
+        }
+    }
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + length);
+        }
+    }
+}
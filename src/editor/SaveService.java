@@ -0,0 +1,199 @@
+package editor;
+
+import javafx.application.Platform;
+import javafx.scene.text.Text;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+public class SaveService {
+    /**
+         SaveService writes the text to disk on a background thread so typing never waits for the disk.
+         Saving takes a snapshot of the text on the JavaFX thread, which is free because a Rope never changes, and
+         hands it to a single background thread that does the actual writing. Saves happen in the order they were
+         asked for.
+         Every few seconds (the editor.autosave system property, 30 by default, 0 turns it off) the text is also
+         written to a recovery file next to the real one, but only if it changed since the last save or autosave.
+         The recovery file is deleted again once the real file has been saved.
+         Once a save is on disk, the Journal of the file is told, so it can drop the edits the save has in it.
+         The status Text shows whether there are unsaved changes and how the last save went.
+         Every open file has its own SaveService, but they all share the one background thread.
+    */
+
+    private static final String AUTOSAVE_PROPERTY = "editor.autosave";
+    private static final int DEFAULT_AUTOSAVE_SECONDS = 30;
+
+    private static ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "save");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private LinkedList text;
+    private Path file;
+    private Path recoveryFile;
+    private Charset charset;
+    private boolean bom;
+    private Text status;
+    private Journal journal;
+    // These are only used on the JavaFX thread
+    private long savedVersion;
+    private long autosavedVersion;
+    private int saving; // Saves that were asked for and haven't finished yet
+
+    public SaveService(LinkedList text, Path file, Charset charset, boolean bom, Text status) {
+        this.text = text;
+        this.file = file.toAbsolutePath();
+        this.recoveryFile = recoveryFile(this.file);
+        this.charset = charset;
+        this.bom = bom;
+        this.status = status;
+        savedVersion = text.version();
+        autosavedVersion = savedVersion;
+    }
+
+    /** Tells journal about every save from now on, or nothing if it is null. */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /** Returns the recovery file that goes with file: .name.recovery in the same directory. */
+    public static Path recoveryFile(Path file) {
+        return file.resolveSibling("." + file.getFileName() + ".recovery");
+    }
+
+    /**
+     * Starts writing the text to the file in the background. If part of the file still hasn't been read, that
+     * is read in the background first, and the text is written once it is all there.
+     */
+    public void save() {
+        saving++;
+        updateStatus();
+        // The whole file has to be read in before it gets replaced
+        text.finishLoading(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+    }
+
+    /** Writes a snapshot of the text, which has all of the file in it, to the file on the background thread. */
+    private void write() {
+        final Rope snapshot = text.snapshot();
+        final long version = text.version();
+        // The journal marks where the snapshot was taken, so its edits can still be told apart from the later
+        // ones if the editor dies after the new file is renamed into place but before the journal catches up
+        final int save = journal != null ? journal.startSave(snapshot.length()) : 0;
+        final long mark = journal != null ? journal.mark() : 0;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean saved = true;
+                try {
+                    if (journal != null) {
+                        journal.saving(save, snapshot);
+                    }
+                    FileSaver.save(snapshot, file, charset, bom);
+                    Files.deleteIfExists(recoveryFile);
+                    if (journal != null) {
+                        journal.saved(mark, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                    }
+                } catch (IOException ioException) {
+                    saved = false;
+                }
+                final boolean succeeded = saved;
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        saving--;
+                        if (succeeded) {
+                            savedVersion = Math.max(savedVersion, version);
+                            autosavedVersion = Math.max(autosavedVersion, version);
+                            updateStatus();
+                        } else {
+                            status.setText("Error saving file.");
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /** Starts autosaving every editor.autosave seconds, unless that is 0. */
+    public void startAutosave() {
+        int seconds = Integer.getInteger(AUTOSAVE_PROPERTY, DEFAULT_AUTOSAVE_SECONDS);
+        if (seconds <= 0) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // The text can only be looked at on the JavaFX thread
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        autosave();
+                    }
+                });
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /** Writes the text to the recovery file in the background if it changed since it was last written out. */
+    private void autosave() {
+        final long version = text.version();
+        if (version == autosavedVersion || version == savedVersion || !text.isLoaded()) {
+            return;
+        }
+        autosavedVersion = version;
+        final Rope snapshot = text.snapshot();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FileSaver.save(snapshot, recoveryFile, charset, bom);
+                } catch (IOException ioException) {
+                    System.out.println("Error writing recovery file.");
+                }
+            }
+        });
+    }
+
+    /** Shows whether the text has changed since it was last saved. */
+    public void updateStatus() {
+        String message;
+        if (saving > 0) {
+            message = "Saving...";
+        } else if (text.version() != savedVersion) {
+            message = "Modified";
+        } else {
+            message = "";
+        }
+        if (!message.equals(status.getText())) {
+            status.setText(message);
+        }
+    }
+
+    /** Waits for saves of every file that have already started to finish, then stops the background thread. */
+    public static void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
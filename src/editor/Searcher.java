@@ -0,0 +1,350 @@
+package editor;
+
+import javafx.application.Platform;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+public class Searcher {
+    /**
+         Searcher looks for a string or a regular expression on a background thread, so typing never waits for it.
+         It searches a snapshot of the text, which is free because a Rope never changes. Matches are handed to
+         the JavaFX thread in batches as they are found instead of all at the end.
+         Starting a new search cancels the one before it. Each search gets a number, and a search stops as soon
+         as it sees that a newer one has started. Batches from an old search are thrown away.
+         A plain string search asks the Rope which parts of the text can't have all of its characters
+         (Rope.spansWithout) and only looks near the ends of those parts. The Rope remembers what characters are
+         in each node, so searching again after an edit skips the same parts without looking at them again.
+    */
+
+    private static final int BLOCK_SIZE = 1 << 16; // Number of characters read from the Rope at a time
+    private static final int BATCH_SIZE = 1024;
+    private static final long BATCH_NANOS = 30000000L; // Longest a match waits before it is handed over
+
+    private ExecutorService executor;
+    private AtomicInteger generation = new AtomicInteger();
+
+    /** Listener hears about new matches on the JavaFX thread. */
+    public interface Listener {
+        /** Called every time more matches come in, and once more when the search is done. */
+        void found(Matches matches);
+    }
+
+    /** Replaced hears on the JavaFX thread that a replace-all is ready. */
+    public interface Replaced {
+        /** Called with what was replaced and the new text, or with nulls if the replacement wasn't valid. */
+        void replaced(Matches matches, Rope result);
+    }
+
+    public Searcher() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "search");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts looking for query in snapshot, which is version of the text, and cancels any search still going.
+     * Returns the Matches, which fill in on the JavaFX thread. Throws PatternSyntaxException if regex is true
+     * and query is not a valid regular expression.
+     */
+    public Matches search(Rope snapshot, long version, String query, boolean regex, Listener listener) {
+        Pattern pattern = regex ? Pattern.compile(query, Pattern.MULTILINE) : null;
+        Matches matches = new Matches(version);
+        executor.execute(new Search(generation.incrementAndGet(), snapshot, query, pattern, matches, listener));
+        return matches;
+    }
+
+    /**
+     * Works out snapshot, which is version of the text, with every match of query replaced by replacement. The
+     * search that is going is cancelled first. The work is spread over every core by a Replacer. Throws
+     * PatternSyntaxException if regex is true and query is not a valid regular expression.
+     */
+    public void replaceAll(final Rope snapshot, final long version, final String query, final boolean regex,
+                           final String replacement, final Replaced done) {
+        if (regex) {
+            Pattern.compile(query, Pattern.MULTILINE);
+        }
+        cancel();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Matches matches = null;
+                Rope result = null;
+                try {
+                    matches = Replacer.findAll(snapshot, version, query, regex);
+                    result = Replacer.replace(snapshot, matches, query, regex, replacement);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException replacementException) {
+                    // The replacement refers to a group the pattern doesn't have
+                    matches = null;
+                }
+                final Matches replaced = matches;
+                final Rope newText = result;
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.replaced(replaced, newText);
+                    }
+                });
+            }
+        });
+    }
+
+    /** Stops the search that is going, if there is one. */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** Stops the search that is going and the background thread. */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /** Search is one search, run on the background thread. */
+    private class Search implements Runnable {
+        private int id;
+        private Rope text;
+        private String query;
+        private Pattern pattern;
+        private Matches matches;
+        private Listener listener;
+        private int[] starts = new int[BATCH_SIZE];
+        private int[] ends = new int[BATCH_SIZE];
+        private int count;
+        private char[] block = new char[0];
+        private long lastFlush = System.nanoTime();
+        private int lastEnd; // Matches can't overlap, so the next one has to start here or later
+
+        Search(int id, Rope text, String query, Pattern pattern, Matches matches, Listener listener) {
+            this.id = id;
+            this.text = text;
+            this.query = query;
+            this.pattern = pattern;
+            this.matches = matches;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled()) {
+                return;
+            }
+            try {
+                if (pattern != null) {
+                    findPattern();
+                } else if (query.length() > 0) {
+                    findString();
+                }
+            } catch (Cancelled cancelled) {
+                return;
+            } catch (RuntimeException | StackOverflowError searchError) {
+                // Some regular expressions recurse once per character and run out of stack on a big text
+                System.out.println("Error searching.");
+            }
+            flush(true);
+        }
+
+        private boolean cancelled() {
+            return generation.get() != id;
+        }
+
+        /** Looks for query. Only the parts of the text that could have a match are read. */
+        private void findString() {
+            int length = query.length();
+            int[] skip = text.spansWithout(Rope.charMask(query));
+            // A match can't be inside a skipped part, but it can start in the last length - 1 characters of one
+            int from = 0;
+            for (int i = 0; i <= skip.length; i += 2) {
+                int to = i < skip.length ? skip[i] : text.length();
+                scan(from, to);
+                if (i < skip.length) {
+                    from = Math.max(skip[i], skip[i + 1] - length + 1);
+                }
+            }
+        }
+
+        /** Looks for query starting anywhere in [from, to). */
+        private void scan(int from, int to) {
+            int length = query.length();
+            from = Math.max(from, lastEnd);
+            to = Math.min(to, text.length() - length + 1);
+            char first = query.charAt(0);
+            for (int blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+                if (cancelled()) {
+                    throw new Cancelled();
+                }
+                int blockEnd = Math.min(to, blockStart + BLOCK_SIZE);
+                int readEnd = blockEnd + length - 1;
+                if (block.length < readEnd - blockStart) {
+                    block = new char[readEnd - blockStart];
+                }
+                text.getChars(blockStart, readEnd, block, 0);
+                for (int p = Math.max(blockStart, lastEnd); p < blockEnd; p++) {
+                    int i = p - blockStart;
+                    if (block[i] == first && matchesAt(block, i)) {
+                        found(p, p + length);
+                        p += length - 1;
+                    }
+                }
+            }
+        }
+
+        private boolean matchesAt(char[] block, int i) {
+            for (int j = 1; j < query.length(); j++) {
+                if (block[i + j] != query.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Looks for pattern. A regular expression can match anything, so all of the text is read. */
+        private void findPattern() {
+            Matcher matcher = pattern.matcher(new Chunks(text, this));
+            while (matcher.find()) {
+                if (matcher.end() > matcher.start()) {
+                    found(matcher.start(), matcher.end());
+                }
+            }
+        }
+
+        private void found(int start, int end) {
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+            lastEnd = end;
+            if (count == BATCH_SIZE || System.nanoTime() - lastFlush > BATCH_NANOS) {
+                flush(false);
+            }
+        }
+
+        /** Hands the matches found since the last flush to the JavaFX thread. */
+        private void flush(final boolean last) {
+            final int[] batchStarts = Arrays.copyOf(starts, count);
+            final int[] batchEnds = Arrays.copyOf(ends, count);
+            count = 0;
+            lastFlush = System.nanoTime();
+            Platform.runLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled()) {
+                        return;
+                    }
+                    matches.add(batchStarts, batchEnds, batchStarts.length);
+                    if (last) {
+                        matches.finish();
+                    }
+                    listener.found(matches);
+                }
+            });
+        }
+    }
+
+    /** Cancelled is thrown to get out of a search that a newer one replaced. */
+    private static class Cancelled extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+         Chunks lets a regular expression read a Rope. Rope.charAt walks down from the root every time, but a
+         Matcher mostly reads one character after the other, so Chunks remembers the leaf it read last.
+         If it belongs to a Search, it also checks every now and then whether the search was cancelled, since one
+         find can take a long time.
+    */
+    static class Chunks implements CharSequence {
+        private static final int CHECK_EVERY = 1 << 16;
+
+        private Rope text;
+        private Search search;
+        private List<CharBuffer> chunks;
+        private int[] chunkStarts;
+        private CharBuffer chunk;
+        private int chunkStart;
+        private int chunkEnd;
+        private int reads;
+
+        Chunks(Rope text) {
+            this(text, null);
+        }
+
+        /** Makes Chunks that read text for search, which can be null. */
+        private Chunks(Rope text, Search search) {
+            this.text = text;
+            this.search = search;
+            chunks = text.chunks();
+            chunkStarts = new int[chunks.size()];
+            int start = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                chunkStarts[i] = start;
+                start += chunks.get(i).remaining();
+            }
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads == CHECK_EVERY) {
+                reads = 0;
+                if (search != null && search.cancelled()) {
+                    throw new Cancelled();
+                }
+            }
+            if (index < chunkStart || index >= chunkEnd) {
+                findChunk(index);
+            }
+            return chunk.get(index - chunkStart);
+        }
+
+        /** Points chunk at the leaf that holds index. */
+        private void findChunk(int index) {
+            if (index < 0 || index >= text.length()) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + text.length());
+            }
+            int low = 0;
+            int high = chunkStarts.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (chunkStarts[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            chunk = chunks.get(low);
+            chunkStart = chunkStarts[low];
+            chunkEnd = chunkStart + chunk.remaining();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+}
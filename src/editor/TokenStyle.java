@@ -0,0 +1,17 @@
+package editor;
+
+
+public enum TokenStyle {
+    /**
+         TokenStyle is what kind of token a Lexer found. The ViewportRenderer picks the color for each.
+    */
+
+    KEYWORD,
+    LITERAL,
+    STRING,
+    NUMBER,
+    COMMENT,
+    KEY,
+    ANNOTATION
+
+}
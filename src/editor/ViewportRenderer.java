@@ -0,0 +1,253 @@
+package editor;
+
+import javafx.geometry.VPos;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+public class ViewportRenderer implements Renderer {
+    /**
+         The ViewportRenderer draws the lines of a LinkedList that are inside the window.
+         It keeps a pool with one Text node for each line that fits in the window, plus one for a line that is only
+         partly shown. Line number n is always drawn by the Text in slot n % pool size, so scrolling down by one
+         line only hands one Text node a new line. The number of nodes in the scene never depends on how long the
+         text is. Search matches, selections and the cursors besides the main one are left to Highlights, which
+         also only draws the ones inside the window.
+         A highlighted line is drawn as one Text node per run of characters with the same color instead, put at
+         the x position of its first character. The runs of each slot are reused too, and the line's Text is
+         hidden while they are shown.
+    */
+
+    static final Color[] TOKEN_COLORS = new Color[TokenStyle.values().length];
+
+    static {
+        TOKEN_COLORS[TokenStyle.KEYWORD.ordinal()] = Color.rgb(0, 0, 160);
+        TOKEN_COLORS[TokenStyle.LITERAL.ordinal()] = Color.rgb(0, 0, 160);
+        TOKEN_COLORS[TokenStyle.STRING.ordinal()] = Color.rgb(0, 128, 0);
+        TOKEN_COLORS[TokenStyle.NUMBER.ordinal()] = Color.rgb(0, 0, 255);
+        TOKEN_COLORS[TokenStyle.COMMENT.ordinal()] = Color.rgb(128, 128, 128);
+        TOKEN_COLORS[TokenStyle.KEY.ordinal()] = Color.rgb(128, 0, 128);
+        TOKEN_COLORS[TokenStyle.ANNOTATION.ordinal()] = Color.rgb(128, 128, 0);
+    }
+
+    private Group root;
+    private LinkedList text;
+    private ArrayList<Text> pool = new ArrayList<Text>();
+    private ArrayList<ArrayList<Text>> runs = new ArrayList<ArrayList<Text>>(); // The runs of each slot
+    private int[] boundLines = new int[0]; // The line each Text in the pool is showing, -1 if none
+    private Font font;
+    private int lineHeight = 1;
+    private int windowHeight;
+    private int scrollY;
+    private int dirtyFrom;
+    private int dirtyTo;
+    private Highlights highlights;
+
+    public ViewportRenderer(Group root, LinkedList text, int windowHeight) {
+        this.root = root;
+        this.text = text;
+        this.windowHeight = windowHeight;
+        highlights = new Highlights(root, text);
+    }
+
+    /** Sets the font of every Text node. All the lines have to be drawn again. */
+    @Override
+    public void setFont(Font font, int lineHeight) {
+        this.font = font;
+        this.lineHeight = lineHeight;
+        highlights.setLineHeight(lineHeight);
+        for (Text lineText : pool) {
+            lineText.setFont(font);
+        }
+        for (ArrayList<Text> slotRuns : runs) {
+            for (Text run : slotRuns) {
+                run.setFont(font);
+            }
+        }
+        resizePool();
+    }
+
+    /** Changes how much of the text fits in the window. Only its height matters, the lines are wrapped already. */
+    @Override
+    public void setWindowSize(int newWidth, int newHeight) {
+        windowHeight = newHeight;
+        resizePool();
+    }
+
+    /** Throws away every Text node and highlight Rectangle. setWindowSize() makes the Text nodes again. */
+    @Override
+    public void release() {
+        root.getChildren().removeAll(pool);
+        pool.clear();
+        for (ArrayList<Text> slotRuns : runs) {
+            root.getChildren().removeAll(slotRuns);
+        }
+        runs.clear();
+        boundLines = new int[0];
+        highlights.release();
+    }
+
+    /** Changes which part of the text is in the window. */
+    @Override
+    public void setScroll(int newScrollY) {
+        scrollY = Math.max(0, newScrollY);
+        update();
+    }
+
+    @Override
+    public int scrollY() {
+        return scrollY;
+    }
+
+    /** Returns the first line in the window. */
+    @Override
+    public int firstLine() {
+        return scrollY / lineHeight;
+    }
+
+    /** Marks the characters of lines [from, to) as changed. */
+    @Override
+    public void invalidate(int from, int to) {
+        if (dirtyFrom >= dirtyTo) {
+            dirtyFrom = from;
+            dirtyTo = to;
+        } else {
+            dirtyFrom = Math.min(dirtyFrom, from);
+            dirtyTo = Math.max(dirtyTo, to);
+        }
+    }
+
+    /** Gives every Text node in the pool the line it should be showing now. */
+    @Override
+    public void update() {
+        int size = pool.size();
+        int first = scrollY / lineHeight;
+        int lineCount = text.lineCount();
+        for (int line = first; line < first + size; line++) {
+            int slot = line % size;
+            Text lineText = pool.get(slot);
+            if (line >= lineCount) {
+                if (boundLines[slot] != -1) {
+                    lineText.setVisible(false);
+                    hideRuns(slot, 0);
+                    boundLines[slot] = -1;
+                }
+            } else if (boundLines[slot] != line || (line >= dirtyFrom && line < dirtyTo)) {
+                String lineString = text.lineString(line);
+                lineText.setText(lineString);
+                lineText.setY(line * lineHeight);
+                lineText.setVisible(!drawRuns(slot, line, lineString));
+                boundLines[slot] = line;
+            }
+        }
+        dirtyFrom = 0;
+        dirtyTo = 0;
+        updateHighlights();
+    }
+
+    /**
+     * Draws line, which says lineString, with the runs of slot if it has any tokens. Returns false if it
+     * doesn't, and the line's Text has to be shown instead.
+     */
+    private boolean drawRuns(final int slot, final int line, final String lineString) {
+        if (!text.isHighlighted()) {
+            hideRuns(slot, 0);
+            return false;
+        }
+        final int lineStart = text.lineStart(line);
+        // used[0] is the number of runs drawn so far, used[1] where the last one ended
+        final int[] used = new int[2];
+        text.tokens(line, new Lexer.Tokens() {
+            @Override
+            public void token(int start, int end, TokenStyle style) {
+                end = Math.min(end, lineString.length());
+                if (start >= end) {
+                    return;
+                }
+                if (used[1] < start) {
+                    run(slot, used[0]++, line, lineStart, used[1], start, lineString, Color.BLACK);
+                }
+                run(slot, used[0]++, line, lineStart, start, end, lineString, TOKEN_COLORS[style.ordinal()]);
+                used[1] = end;
+            }
+        });
+        if (used[0] == 0) {
+            hideRuns(slot, 0);
+            return false;
+        }
+        if (used[1] < lineString.length()) {
+            run(slot, used[0]++, line, lineStart, used[1], lineString.length(), lineString, Color.BLACK);
+        }
+        hideRuns(slot, used[0]);
+        return true;
+    }
+
+    /** Shows lineString[start, end) of line, which starts at offset lineStart, in color with run number index. */
+    private void run(int slot, int index, int line, int lineStart, int start, int end, String lineString,
+                     Color color) {
+        ArrayList<Text> slotRuns = runs.get(slot);
+        if (index == slotRuns.size()) {
+            Text run = new Text();
+            run.setTextOrigin(VPos.TOP);
+            run.setFont(font);
+            root.getChildren().add(run);
+            slotRuns.add(run);
+        }
+        Text run = slotRuns.get(index);
+        run.setText(lineString.substring(start, end));
+        run.setFill(color);
+        run.setX(text.xOf(lineStart + start, line));
+        run.setY(line * lineHeight);
+        run.setVisible(true);
+    }
+
+    /** Hides the runs of slot from run number from on. */
+    private void hideRuns(int slot, int from) {
+        ArrayList<Text> slotRuns = runs.get(slot);
+        for (int i = from; i < slotRuns.size(); i++) {
+            slotRuns.get(i).setVisible(false);
+        }
+    }
+
+    /** Sets the search matches to highlight, or null for none. */
+    @Override
+    public void setMatches(Matches matches) {
+        highlights.setMatches(matches);
+        updateHighlights();
+    }
+
+    /** Draws the matches, the selections and the cursors besides the main one inside the window again. */
+    @Override
+    public void updateHighlights() {
+        int first = scrollY / lineHeight;
+        highlights.update(first, first + pool.size());
+    }
+
+    /** Makes sure there is one Text node for every line that can be seen, and draws them all again. */
+    private void resizePool() {
+        int size = windowHeight / lineHeight + 2;
+        while (pool.size() > size) {
+            root.getChildren().remove(pool.remove(pool.size() - 1));
+            root.getChildren().removeAll(runs.remove(runs.size() - 1));
+        }
+        while (pool.size() < size) {
+            runs.add(new ArrayList<Text>());
+            Text lineText = new Text();
+            lineText.setTextOrigin(VPos.TOP);
+            lineText.setX(5);
+            lineText.setFont(font);
+            root.getChildren().add(lineText);
+            pool.add(lineText);
+        }
+        // The slot of every line depends on the pool size, so nothing is bound to the right line any more
+        boundLines = new int[size];
+        Arrays.fill(boundLines, -2);
+        update();
+    }
+
+}
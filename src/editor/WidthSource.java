@@ -0,0 +1,13 @@
+package editor;
+
+
+public interface WidthSource {
+    /**
+         A WidthSource says how wide each character is, which is all the LayoutEngine needs to know about a font.
+         A FontMetricsCache measures them in JavaFX; anything else (a table, a fixed width) works without it.
+    */
+
+    /** Returns how far the next character moves along after codePoint. Newlines take up no space. */
+    double width(int codePoint);
+
+}